@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.ksp
+
+import com.google.devtools.ksp.processing.*
+import com.google.devtools.ksp.symbol.ClassKind
+import com.google.devtools.ksp.symbol.KSAnnotated
+import com.google.devtools.ksp.symbol.KSClassDeclaration
+import name.wildswift.android.kannotations.ActivityField
+import name.wildswift.android.kannotations.ActivityFields
+import name.wildswift.android.kanprocessor.generators.ActivityExtensionGenerator.buildExtensionFile
+import name.wildswift.android.kanprocessor.ksp.datahelpers.toActivityFieldData
+import name.wildswift.android.kanprocessor.ksp.utils.annotationsArgument
+import name.wildswift.android.kanprocessor.ksp.utils.findAnnotations
+import name.wildswift.android.kanprocessor.ksp.utils.resolveKotlinVisibility
+import name.wildswift.android.kanprocessor.ksp.utils.writeTo
+
+/**
+ * KSP version of [name.wildswift.android.kanprocessor.ActivityFieldsAnnotationProcessor]
+ */
+class ActivityFieldsSymbolProcessor(
+        private val codeGenerator: CodeGenerator,
+        private val logger: KSPLogger
+) : SymbolProcessor {
+
+    override fun process(resolver: Resolver): List<KSAnnotated> {
+        (resolver.getSymbolsWithAnnotation(ActivityFields::class.java.name) + resolver.getSymbolsWithAnnotation(ActivityField::class.java.name))
+                .distinct()
+                .forEach {
+                    if (it !is KSClassDeclaration || it.classKind != ClassKind.CLASS) {
+                        logger.error("Can be applied to class.", it)
+                        throw IllegalArgumentException()
+                    }
+                    val annotations = it.findAnnotations(ActivityFields::class.java.name).flatMap { it.annotationsArgument("value") } + it.findAnnotations(ActivityField::class.java.name)
+                    buildExtensionFile(it.simpleName.asString(), it.packageName.asString(), annotations.map { it.toActivityFieldData() }, it.resolveKotlinVisibility(), null)
+                            .writeTo(codeGenerator, Dependencies(false, *listOfNotNull(it.containingFile).toTypedArray()))
+                }
+        return emptyList()
+    }
+}
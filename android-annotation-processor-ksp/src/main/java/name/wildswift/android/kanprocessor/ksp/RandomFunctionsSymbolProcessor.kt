@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.ksp
+
+import com.google.devtools.ksp.processing.*
+import com.google.devtools.ksp.symbol.ClassKind
+import com.google.devtools.ksp.symbol.KSAnnotated
+import com.google.devtools.ksp.symbol.KSClassDeclaration
+import name.wildswift.android.kannotations.RandomFunction
+import name.wildswift.android.kannotations.RandomFunctions
+import name.wildswift.android.kanprocessor.RandomFunctionsSeed
+import name.wildswift.android.kanprocessor.generators.RandomFunctionsGenerator.buildRandomizerFile
+import name.wildswift.android.kanprocessor.ksp.datahelpers.toRandomFunctionData
+import name.wildswift.android.kanprocessor.ksp.utils.annotationsArgument
+import name.wildswift.android.kanprocessor.ksp.utils.findAnnotations
+import name.wildswift.android.kanprocessor.ksp.utils.resolveKotlinVisibility
+import name.wildswift.android.kanprocessor.ksp.utils.writeTo
+
+/**
+ * KSP version of [name.wildswift.android.kanprocessor.RandomFunctionsAnnotationProcessor]
+ */
+class RandomFunctionsSymbolProcessor(
+        private val codeGenerator: CodeGenerator,
+        private val logger: KSPLogger,
+        options: Map<String, String>
+) : SymbolProcessor {
+    private val seed = RandomFunctionsSeed.from(options)
+
+    override fun process(resolver: Resolver): List<KSAnnotated> {
+        (resolver.getSymbolsWithAnnotation(RandomFunctions::class.java.name) + resolver.getSymbolsWithAnnotation(RandomFunction::class.java.name))
+                .distinct()
+                .forEach {
+                    if (it !is KSClassDeclaration || it.classKind != ClassKind.CLASS) {
+                        logger.error("Can be applied to class.", it)
+                        throw IllegalArgumentException()
+                    }
+                    val annotations = it.findAnnotations(RandomFunctions::class.java.name).flatMap { it.annotationsArgument("value") } + it.findAnnotations(RandomFunction::class.java.name)
+                    val data = annotations.map { it.toRandomFunctionData() }
+                    val randomizer = seed.randomizerFor(it.qualifiedName?.asString() ?: it.simpleName.asString(), data)
+                    buildRandomizerFile(it.simpleName.asString(), it.packageName.asString(), data, it.resolveKotlinVisibility(), randomizer, null)
+                            .writeTo(codeGenerator, Dependencies(false, *listOfNotNull(it.containingFile).toTypedArray()))
+                }
+        return emptyList()
+    }
+}
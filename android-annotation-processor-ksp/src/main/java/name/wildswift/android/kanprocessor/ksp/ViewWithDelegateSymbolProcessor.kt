@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.ksp
+
+import com.google.devtools.ksp.processing.*
+import com.google.devtools.ksp.symbol.ClassKind
+import com.google.devtools.ksp.symbol.KSAnnotated
+import com.google.devtools.ksp.symbol.KSClassDeclaration
+import name.wildswift.android.kannotations.ViewWithDelegate
+import name.wildswift.android.kannotations.interfaces.ViewDelegate
+import name.wildswift.android.kanprocessor.ProcessingEnvConstants
+import name.wildswift.android.kanprocessor.datahelpers.DelegateIndex
+import name.wildswift.android.kanprocessor.datahelpers.DelegateRoundsState
+import name.wildswift.android.kanprocessor.datahelpers.UnresolvedTypeException
+import name.wildswift.android.kanprocessor.generators.ViewClassGenerator.buildViewFiles
+import name.wildswift.android.kanprocessor.ksp.datahelpers.KspDelegateTypeResolver
+import name.wildswift.android.kanprocessor.ksp.datahelpers.toViewWithDelegateGenerationData
+import name.wildswift.android.kanprocessor.ksp.utils.writeTo
+
+/**
+ * KSP version of [name.wildswift.android.kanprocessor.ViewWithDelegateAnnotationProcessor]
+ */
+class ViewWithDelegateSymbolProcessor(
+        private val codeGenerator: CodeGenerator,
+        private val logger: KSPLogger,
+        private val options: Map<String, String>
+) : SymbolProcessor {
+
+    private val roundsState = DelegateRoundsState()
+
+    override fun process(resolver: Resolver): List<KSAnnotated> {
+        // Deferred symbols are returned by getSymbolsWithAnnotation again, state keeps only types of processed delegates
+        roundsState.nextRound()
+        val appId = options["application.id"]
+                ?: throw IllegalArgumentException("Argument \"application.id\" is not set. Please add \"ksp\" -> \"arg(\"application.id\", <value>)\"")
+        val envConstants = ProcessingEnvConstants(appId = appId)
+
+        val processingElements = resolver.getSymbolsWithAnnotation(ViewWithDelegate::class.java.name).toList()
+        validate(processingElements)
+
+        val typeResolver = roundsState.resolverFor(KspDelegateTypeResolver(resolver))
+
+        val deferredSymbols = mutableListOf<KSAnnotated>()
+        val generationData = processingElements
+                .filterIsInstance<KSClassDeclaration>()
+                .mapNotNull { delegate ->
+                    try {
+                        delegate to delegate.toViewWithDelegateGenerationData(resolver)
+                    } catch (e: UnresolvedTypeException) {
+                        roundsState.defer(delegate.qualifiedName?.asString() ?: delegate.simpleName.asString(), listOf("type of \"${e.memberName}\""))
+                        deferredSymbols += delegate
+                        null
+                    }
+                }
+        generationData.forEach { (_, data) -> roundsState.register(data.generatedTypes) }
+
+        generationData.forEach { (delegate, data) ->
+            if (!roundsState.deferIfUnresolved(data, typeResolver)) {
+                deferredSymbols += delegate
+                return@forEach
+            }
+
+            val dependencies = Dependencies(false, *listOfNotNull(delegate.containingFile).toTypedArray())
+            buildViewFiles(data, typeResolver, envConstants)
+                    .forEach { it.writeTo(codeGenerator, dependencies) }
+            codeGenerator.createNewFile(dependencies, DelegateIndex.PACKAGE, data.delegateType.canonicalName, DelegateIndex.EXTENSION)
+                    .writer()
+                    .use { it.write(DelegateIndex.encode(data.generatedTypes)) }
+        }
+        return deferredSymbols
+    }
+
+    override fun finish() {
+        roundsState.nextRound().forEach { (delegateName, unresolved) ->
+            logger.error(DelegateRoundsState.unresolvedMessage(delegateName, unresolved))
+        }
+    }
+
+    private fun validate(processingElements: List<KSAnnotated>) {
+        processingElements.forEach {
+            if (it !is KSClassDeclaration || it.classKind != ClassKind.CLASS) {
+                logger.error("Can be applied only to class.", it)
+                throw IllegalArgumentException("ViewWithDelegate may be used only as class annotation. Can't apply to $it")
+            }
+            if (!it.extendsViewDelegate()) {
+                logger.error("Class is not implements ${ViewDelegate::class.java.name}.", it)
+                throw IllegalArgumentException("ViewWithDelegate may be used only with class that implements ${ViewDelegate::class.java.name}. " +
+                        "Can't apply to ${it.qualifiedName?.asString() ?: it.simpleName.asString()}")
+            }
+        }
+    }
+
+    // Delegate may extend ViewDelegate through own base classes
+    private fun KSClassDeclaration.extendsViewDelegate(): Boolean = superTypes
+            .mapNotNull { it.resolve().declaration as? KSClassDeclaration }
+            .any { it.qualifiedName?.asString() == ViewDelegate::class.java.name || it.extendsViewDelegate() }
+}
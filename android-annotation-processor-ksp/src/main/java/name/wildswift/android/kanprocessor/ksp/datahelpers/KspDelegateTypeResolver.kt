@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.ksp.datahelpers
+
+import com.google.devtools.ksp.processing.Resolver
+import com.google.devtools.ksp.symbol.KSClassDeclaration
+import name.wildswift.android.kannotations.DelegateIndexEntry
+import name.wildswift.android.kannotations.Fields
+import name.wildswift.android.kannotations.ViewField
+import name.wildswift.android.kannotations.ViewWithDelegate
+import name.wildswift.android.kanprocessor.datahelpers.DelegateGeneratedTypes
+import name.wildswift.android.kanprocessor.datahelpers.DelegateIndex
+import name.wildswift.android.kanprocessor.datahelpers.DelegateTypeResolver
+import name.wildswift.android.kanprocessor.ksp.utils.annotationsArgument
+import name.wildswift.android.kanprocessor.ksp.utils.booleanArgument
+import name.wildswift.android.kanprocessor.ksp.utils.findAnnotations
+import name.wildswift.android.kanprocessor.ksp.utils.stringArgument
+import name.wildswift.android.kanprocessor.ksp.utils.toClassName
+
+/**
+ * [DelegateTypeResolver] for KSP, looks up referenced delegates through [Resolver].
+ * Delegates compiled in other modules have no source annotations, so they are resolved from index entry object generated with them
+ */
+class KspDelegateTypeResolver(private val resolver: Resolver) : DelegateTypeResolver {
+    private val cache = mutableMapOf<String, DelegateGeneratedTypes?>()
+
+    override operator fun get(delegateName: String?): DelegateGeneratedTypes? {
+        if (delegateName == null) return null
+        return cache.getOrPut(delegateName) {
+            val declaration = resolver.getClassDeclarationByName(resolver.getKSNameFromString(delegateName))
+                    ?: return@getOrPut null
+            val annotation = declaration.findAnnotations(ViewWithDelegate::class.java.name).firstOrNull()
+                    ?: return@getOrPut readIndexEntry(declaration)
+            DelegateGeneratedTypes.of(
+                    packageName = declaration.packageName.asString(),
+                    className = declaration.simpleName.asString(),
+                    viewName = annotation.stringArgument("name", ""),
+                    generateViewDataObject = annotation.booleanArgument("generateViewDataObject", true),
+                    precomputesText = (declaration.findAnnotations(Fields::class.java.name).flatMap { it.annotationsArgument("value") } + declaration.findAnnotations(ViewField::class.java.name))
+                            .any { it.booleanArgument("precomputeText", false) }
+            )
+        }
+    }
+
+    private fun readIndexEntry(declaration: KSClassDeclaration) = resolver
+            .getClassDeclarationByName(resolver.getKSNameFromString(DelegateIndex.entryType(declaration.toClassName()).canonicalName))
+            ?.findAnnotations(DelegateIndexEntry::class.java.name)
+            ?.firstOrNull()
+            ?.stringArgument("value")
+            ?.let { DelegateIndex.decode(it) }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.ksp.datahelpers
+
+import com.google.devtools.ksp.getDeclaredFunctions
+import com.google.devtools.ksp.processing.Resolver
+import com.google.devtools.ksp.symbol.ClassKind
+import com.google.devtools.ksp.symbol.KSAnnotation
+import com.google.devtools.ksp.symbol.KSClassDeclaration
+import com.google.devtools.ksp.symbol.KSFunctionDeclaration
+import com.squareup.kotlinpoet.ClassName
+import com.squareup.kotlinpoet.UNIT
+import name.wildswift.android.kannotations.*
+import name.wildswift.android.kannotations.interfaces.ViewDelegate
+import name.wildswift.android.kanprocessor.datahelpers.*
+import name.wildswift.android.kanprocessor.ksp.utils.*
+import name.wildswift.android.kanprocessor.utils.viewClass
+
+/**
+ * Builders of frontend independent annotation data from KSP symbols. Defaults are duplicated from annotation declarations,
+ * because KSP does not report default values for annotations declared in Java
+ */
+fun KSAnnotation.toViewWithDelegateData() = ViewWithDelegateData(
+        name = stringArgument("name", ""),
+        parent = typeArgument("parent"),
+        haveChild = booleanArgument("haveChild", true),
+        layoutResourceName = stringArgument("layoutResourceName", ""),
+        saveInstanceState = booleanArgument("saveInstanceState", true),
+        generateViewDataObject = booleanArgument("generateViewDataObject", true),
+        coalesceFrameUpdates = booleanArgument("coalesceFrameUpdates", false),
+        mutableState = booleanArgument("mutableState", false),
+        lifecycleAwareListeners = booleanArgument("lifecycleAwareListeners", false)
+)
+
+fun KSAnnotation.toViewFieldData(resolver: Resolver): ViewFieldData {
+    val type = nonVoidTypeArgument("type")
+    val firstEnumConstant = (type as? ClassName)
+            ?.let { resolver.getClassDeclarationByName(resolver.getKSNameFromString(it.canonicalName)) }
+            ?.takeIf { it.classKind == ClassKind.ENUM_CLASS }
+            ?.declarations
+            ?.filterIsInstance<KSClassDeclaration>()
+            ?.firstOrNull { it.classKind == ClassKind.ENUM_ENTRY }
+            ?.simpleName
+            ?.asString()
+    return ViewFieldData(
+            name = stringArgument("name"),
+            byDelegate = nonVoidTypeArgument("byDelegate") as? ClassName,
+            byProperty = enumArgument("byProperty", ViewProperty.none),
+            type = type,
+            defaultValue = stringArgument("defaultValue", ""),
+            childPropertyName = stringArgument("childPropertyName", ""),
+            childPropertySetter = stringArgument("childPropertySetter", ""),
+            childPropertyListener = stringArgument("childPropertyListener", ""),
+            childPropertyListenerParams = stringArgument("childPropertyListenerParams", "newValue"),
+            rwType = enumArgument("rwType", ReadWriteMode.Field),
+            childName = stringArgument("childName", ""),
+            activeChild = booleanArgument("activeChild", false),
+            propagation = enumArgument("propagation", OutputPropagation.Immediate),
+            propagationDelay = intArgument("propagationDelay", 300),
+            minimalTextEdit = booleanArgument("minimalTextEdit", false),
+            precomputeText = booleanArgument("precomputeText", false),
+            asyncDrawable = booleanArgument("asyncDrawable", false),
+            gatedBy = stringArgument("gatedBy", ""),
+            firstEnumConstant = firstEnumConstant
+    )
+}
+
+fun KSAnnotation.toCollectionViewFieldData() = CollectionViewFieldData(
+        name = stringArgument("name"),
+        byDelegate = nonVoidTypeArgument("byDelegate") as? ClassName,
+        byProperty = enumArgument("byProperty", ViewProperty.none),
+        type = nonVoidTypeArgument("type"),
+        defaultValue = stringArgument("defaultValue", ""),
+        childPropertyName = stringArgument("childPropertyName", ""),
+        childPropertySetter = stringArgument("childPropertySetter", ""),
+        childPropertyListener = stringArgument("childPropertyListener", ""),
+        childPropertyListenerParams = stringArgument("childPropertyListenerParams", "newValue"),
+        rwType = enumArgument("rwType", ReadWriteMode.Field),
+        childName = stringArgument("childName", ""),
+        listImplementation = enumArgument("listImplementation", ListImplementation.RecyclerView),
+        viewForElementClass = typeArgument("viewForElementClass", viewClass),
+        activeChild = booleanArgument("activeChild", false),
+        elementEvents = annotationsArgument("elementEvents").map { it.toListEventData() },
+        precomputeTextDistance = intArgument("precomputeTextDistance", 0)
+)
+
+fun KSAnnotation.toViewEventData() = ViewEventData(
+        name = stringArgument("name"),
+        childName = stringArgument("childName", ""),
+        listener = enumArgument("listener", ViewListener.none),
+        listenerName = stringArgument("listenerName", "")
+)
+
+fun KSAnnotation.toListEventData() = ListEventData(
+        name = stringArgument("name"),
+        listener = enumArgument("listener", ViewListener.none),
+        listenerName = stringArgument("listenerName", "")
+)
+
+fun KSAnnotation.toViewAttributeData() = ViewAttributeData(
+        reference = stringArgument("reference"),
+        type = enumArgument("type"),
+        fieldName = stringArgument("fieldName", "")
+)
+
+fun KSAnnotation.toActivityFieldData() = ActivityFieldData(
+        name = stringArgument("name"),
+        type = typeArgument("type"),
+        nullable = booleanArgument("nullable", false)
+)
+
+fun KSAnnotation.toRandomFunctionData() = RandomFunctionData(
+        prefix = stringArgument("perfix", "random"),
+        count = intArgument("count", 1),
+        type = enumArgument("type", RandomFunctionType.boolCheck),
+        parameters = annotationsArgument("parameters").map {
+            RandomFunctionData.Parameter(it.stringArgument("name"), it.typeArgument("type"), it.booleanArgument("nullable", false))
+        },
+        dictionary = stringsArgument("dictionary")
+)
+
+fun KSFunctionDeclaration.toDelegatedMethodData() = DelegatedMethodData(
+        name = simpleName.asString(),
+        returnType = returnType?.resolve()?.toTypeName() ?: UNIT,
+        parameters = parameters.map { it.name?.asString().orEmpty() to it.type.resolve().toTypeName() }
+)
+
+fun KSClassDeclaration.toViewWithDelegateGenerationData(resolver: Resolver): ViewWithDelegateGenerationData {
+    fun collect(containerName: String, name: String) =
+            findAnnotations(containerName).flatMap { it.annotationsArgument("value") } + findAnnotations(name)
+
+    val functions = getDeclaredFunctions().toList()
+
+    return ViewWithDelegateGenerationData.create(
+            packageName = packageName.asString(),
+            className = simpleName.asString(),
+            rootAnnotation = findAnnotations(ViewWithDelegate::class.java.name).first().toViewWithDelegateData(),
+            attrs = collect(Attributes::class.java.name, ViewAttribute::class.java.name).map { it.toViewAttributeData() },
+            events = collect(Events::class.java.name, ViewEvent::class.java.name).map { it.toViewEventData() },
+            fields = collect(Fields::class.java.name, ViewField::class.java.name).map { it.toViewFieldData(resolver) },
+            listFields = collect(CollectionsFields::class.java.name, CollectionViewField::class.java.name).map { it.toCollectionViewFieldData() },
+            delegatedMethods = functions.filter { it.hasAnnotation(Delegated::class.java.name) }.map { it.toDelegatedMethodData() },
+            visibilityModifier = resolveKotlinVisibility(),
+            wrapAdapterMapping = functions.mapNotNull { function ->
+                function.findAnnotations(WrapAdapter::class.java.name).firstOrNull()?.let { it.stringArgument("value") to function.simpleName.asString() }
+            },
+            overriddenStateCallbacks = getAllFunctions()
+                    .filter { it.parentDeclaration?.qualifiedName?.asString() != ViewDelegate::class.java.name }
+                    .map { it.simpleName.asString() }
+                    .filter { it in ViewWithDelegateGenerationData.STATE_CALLBACKS }
+                    .toSet(),
+            originatingElement = null
+    )
+}
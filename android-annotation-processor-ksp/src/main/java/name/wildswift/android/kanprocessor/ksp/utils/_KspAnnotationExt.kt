@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.ksp.utils
+
+import com.google.devtools.ksp.symbol.KSAnnotated
+import com.google.devtools.ksp.symbol.KSAnnotation
+import com.google.devtools.ksp.symbol.KSDeclaration
+import com.google.devtools.ksp.symbol.KSType
+import com.squareup.kotlinpoet.TypeName
+import name.wildswift.android.kanprocessor.datahelpers.UnresolvedTypeException
+
+/**
+ * Readers of annotation arguments for KSP. KSP returns annotation values as plain objects:
+ * class literals as [KSType], nested annotations as [KSAnnotation] and arrays as [List]
+ */
+fun KSAnnotated.findAnnotations(qualifiedName: String) = annotations
+        .filter { it.shortName.asString() == qualifiedName.substringAfterLast('.') }
+        .filter { it.annotationType.resolve().declaration.qualifiedName?.asString() == qualifiedName }
+        .toList()
+
+fun KSAnnotated.hasAnnotation(qualifiedName: String) = findAnnotations(qualifiedName).isNotEmpty()
+
+fun KSAnnotation.argument(name: String): Any? = arguments.firstOrNull { it.name?.asString() == name }?.value
+
+fun KSAnnotation.stringArgument(name: String, default: String? = null) = argument(name) as? String
+        ?: default
+        ?: throw IllegalArgumentException("Argument \"$name\" is not set for ${shortName.asString()}")
+
+fun KSAnnotation.booleanArgument(name: String, default: Boolean) = argument(name) as? Boolean ?: default
+
+fun KSAnnotation.intArgument(name: String, default: Int) = argument(name) as? Int ?: default
+
+/**
+ * Depending on KSP version and source language enum entry is represented as [KSType] of entry or as entry declaration
+ */
+inline fun <reified T : Enum<T>> KSAnnotation.enumArgument(name: String, default: T? = null): T {
+    val entryName = when (val value = argument(name)) {
+        is KSType -> value.declaration.simpleName.asString()
+        is KSDeclaration -> value.simpleName.asString()
+        else -> null
+    }
+    return entryName?.let { enumValueOf<T>(it) }
+            ?: default
+            ?: throw IllegalArgumentException("Argument \"$name\" is not set for ${shortName.asString()}")
+}
+
+/**
+ * Class literal of type, that is not generated yet, is represented as error type
+ */
+fun KSAnnotation.resolvedTypeArgument(name: String) = (argument(name) as? KSType)
+        ?.also { if (it.isError) throw UnresolvedTypeException(name) }
+
+fun KSAnnotation.typeArgument(name: String, default: TypeName? = null) = resolvedTypeArgument(name)?.toClassTypeName()
+        ?: default
+        ?: throw IllegalArgumentException("Argument \"$name\" is not set for ${shortName.asString()}")
+
+/**
+ * Class argument with `Void` value is represented as `null`, same as for kapt
+ */
+fun KSAnnotation.nonVoidTypeArgument(name: String) = resolvedTypeArgument(name)
+        ?.toClassTypeName()
+        ?.takeIf { it.toString() != "java.lang.Void" && it.toString() != "kotlin.Nothing" }
+
+/**
+ * Java allows to omit braces for single element array, in that case KSP returns element itself
+ */
+fun KSAnnotation.arrayArgument(name: String) = when (val value = argument(name)) {
+    null -> emptyList()
+    is List<*> -> value
+    else -> listOf(value)
+}
+
+fun KSAnnotation.annotationsArgument(name: String) = arrayArgument(name).filterIsInstance<KSAnnotation>()
+
+fun KSAnnotation.stringsArgument(name: String) = arrayArgument(name).filterIsInstance<String>()
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.ksp.utils
+
+import com.google.devtools.ksp.getVisibility
+import com.google.devtools.ksp.processing.CodeGenerator
+import com.google.devtools.ksp.processing.Dependencies
+import com.google.devtools.ksp.symbol.*
+import com.squareup.kotlinpoet.*
+import com.squareup.kotlinpoet.ParameterizedTypeName.Companion.parameterizedBy
+import java.io.OutputStreamWriter
+
+/**
+ * Class literal from annotation. Type arguments are dropped, as class literal is always raw type.
+ * KSP reports Java primitive class literals (`int.class`) as boxed types, so they are mapped back to Kotlin primitives
+ */
+fun KSType.toClassTypeName(): TypeName = declaration.toClassName()
+
+/**
+ * Full type with arguments and nullability, used for delegated method signatures
+ */
+fun KSType.toTypeName(): TypeName {
+    val rawType = declaration.toClassName()
+    val typeName = if (arguments.isEmpty()) rawType else rawType.parameterizedBy(*arguments.map { it.toTypeName() }.toTypedArray())
+    return typeName.copy(nullable = isMarkedNullable)
+}
+
+fun KSTypeArgument.toTypeName(): TypeName {
+    val argumentType = type?.resolve()?.toTypeName() ?: return STAR
+    return when (variance) {
+        Variance.STAR -> STAR
+        Variance.COVARIANT -> WildcardTypeName.producerOf(argumentType)
+        Variance.CONTRAVARIANT -> WildcardTypeName.consumerOf(argumentType)
+        Variance.INVARIANT -> argumentType
+    }
+}
+
+/**
+ * For unresolved types (for example classes that will be generated in this round) only simple name is known,
+ * so type expected to be in same package with declaration that reference it
+ */
+fun KSDeclaration.toClassName(): ClassName {
+    val packageName = packageName.asString()
+    val qualifiedName = qualifiedName?.asString() ?: return ClassName(packageName, simpleName.asString())
+    val className = ClassName(packageName, qualifiedName.removePrefix("$packageName.").split("."))
+    return javaToKotlinTypes[className.canonicalName] ?: className
+}
+
+fun KSDeclaration.resolveKotlinVisibility() = when (getVisibility()) {
+    Visibility.INTERNAL -> KModifier.INTERNAL
+    Visibility.PROTECTED -> KModifier.PROTECTED
+    Visibility.PRIVATE -> KModifier.PRIVATE
+    else -> KModifier.PUBLIC
+}
+
+fun FileSpec.writeTo(codeGenerator: CodeGenerator, dependencies: Dependencies) {
+    OutputStreamWriter(codeGenerator.createNewFile(dependencies, packageName, name), Charsets.UTF_8).use { writeTo(it) }
+}
+
+private val javaToKotlinTypes = mapOf(
+        "java.lang.String" to STRING,
+        "java.lang.Boolean" to BOOLEAN,
+        "java.lang.Byte" to BYTE,
+        "java.lang.Short" to SHORT,
+        "java.lang.Integer" to INT,
+        "java.lang.Long" to LONG,
+        "java.lang.Character" to CHAR,
+        "java.lang.Float" to FLOAT,
+        "java.lang.Double" to DOUBLE
+)
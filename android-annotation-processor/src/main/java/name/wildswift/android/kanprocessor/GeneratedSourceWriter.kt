@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wildswift.android.kanprocessor
+
+import com.squareup.kotlinpoet.FileSpec
+import com.squareup.kotlinpoet.OriginatingElementsHolder
+import javax.annotation.processing.Filer
+
+/**
+ * Writes generated files through [Filer], so originating elements of type specs are reported and kapt tracks outputs of every
+ * source. File, that was already written in this processing (delegate deferred to next round), is skipped, as [Filer] does not
+ * allow to create it twice
+ */
+class GeneratedSourceWriter(private val filer: Filer) {
+    private val writtenFiles = mutableMapOf<String, String>()
+
+    /**
+     * @return `false` if write skipped, because file with same content is already written
+     */
+    fun write(fileSpec: FileSpec): Boolean {
+        val path = if (fileSpec.packageName.isEmpty()) fileSpec.name else "${fileSpec.packageName}.${fileSpec.name}"
+        val content = fileSpec.toString()
+        val existingContent = writtenFiles.put(path, content)
+        if (existingContent == content) return false
+        if (existingContent != null) throw IllegalStateException("File $path is generated twice with different content")
+        // Isolating processor must report source of every file, otherwise kapt can't remove output of changed or deleted source
+        if (fileSpec.members.none { it is OriginatingElementsHolder && it.originatingElements.isNotEmpty() }) throw IllegalStateException("File $path has no originating element")
+        fileSpec.writeTo(filer)
+        return true
+    }
+}
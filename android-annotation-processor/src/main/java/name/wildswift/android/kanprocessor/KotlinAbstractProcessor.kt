@@ -25,4 +25,14 @@ abstract class KotlinAbstractProcessor : AbstractProcessor() {
     val generationPath: File by lazy(LazyThreadSafetyMode.SYNCHRONIZED) {
         File(processingEnv.options["kapt.kotlin.generated"] ?: ".")
     }
+
+    val sourceWriter: GeneratedSourceWriter by lazy(LazyThreadSafetyMode.SYNCHRONIZED) {
+        GeneratedSourceWriter(processingEnv.filer)
+    }
+
+    val profiler: ProcessingProfiler by lazy(LazyThreadSafetyMode.SYNCHRONIZED) {
+        ProcessingProfiler.from(processingEnv.options, generationPath, javaClass.simpleName)
+    }
+
+    override fun getSupportedOptions() = setOf(ProcessingProfiler.OPTION_PROFILE, ProcessingProfiler.OPTION_PROFILE_DIR)
 }
\ No newline at end of file
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor
+
+import java.io.File
+
+/**
+ * Collects time spent by processor per round and per annotated element. Enabled by kapt option `wsannotations.profile=true`.
+ * Report is written as JSON to `build/reports/wsannotations/<processor>.json`, or to directory set by `wsannotations.profile.dir`
+ */
+class ProcessingProfiler(private val processorName: String, private val reportDir: File?) {
+    private val rounds = mutableListOf<RoundRecord>()
+    private val elements = linkedMapOf<Pair<Int, String>, ElementRecord>()
+    private var peakUsedHeap = 0L
+
+    val enabled get() = reportDir != null
+
+    fun <T> round(elementsCount: Int, block: () -> T): T {
+        if (!enabled) return block()
+        val start = System.nanoTime()
+        val result = block()
+        synchronized(this) {
+            rounds.add(RoundRecord(rounds.size + 1, elementsCount, System.nanoTime() - start))
+            sampleHeap()
+        }
+        return result
+    }
+
+    /**
+     * May be called from several threads, if phases of different elements are executed concurrently
+     */
+    fun <T> measure(element: String, phase: String, block: () -> T): T {
+        if (!enabled) return block()
+        val start = System.nanoTime()
+        val result = block()
+        val duration = System.nanoTime() - start
+        synchronized(this) {
+            val round = rounds.size + 1
+            val record = elements.getOrPut(round to element) { ElementRecord(element, round) }
+            record.phases[phase] = (record.phases[phase] ?: 0L) + duration
+            sampleHeap()
+        }
+        return result
+    }
+
+    fun writeReport() {
+        val dir = reportDir ?: return
+        dir.mkdirs()
+        File(dir, "$processorName.json").writeText(buildString {
+            append("{\n")
+            append("  \"processor\": ${processorName.toJson()},\n")
+            append("  \"peakUsedHeapBytes\": $peakUsedHeap,\n")
+            append("  \"rounds\": [")
+            append(rounds.joinToString(",") { "\n    {\"round\": ${it.round}, \"elements\": ${it.elementsCount}, \"totalMs\": ${it.duration.toMs()}}" })
+            append("\n  ],\n")
+            append("  \"elements\": [")
+            append(elements.values.joinToString(",") { record ->
+                "\n    {\"element\": ${record.element.toJson()}, \"round\": ${record.round}, \"totalMs\": ${record.phases.values.sum().toMs()}, \"phases\": {" +
+                        record.phases.entries.joinToString(", ") { "${it.key.toJson()}: ${it.value.toMs()}" } +
+                        "}}"
+            })
+            append("\n  ]\n")
+            append("}\n")
+        })
+    }
+
+    private fun sampleHeap() {
+        val runtime = Runtime.getRuntime()
+        peakUsedHeap = maxOf(peakUsedHeap, runtime.totalMemory() - runtime.freeMemory())
+    }
+
+    private fun Long.toMs() = "%.3f".format(java.util.Locale.US, this / 1_000_000.0)
+
+    private fun String.toJson() = "\"" + replace("\\", "\\\\").replace("\"", "\\\"") + "\""
+
+    private class RoundRecord(val round: Int, val elementsCount: Int, val duration: Long)
+
+    private class ElementRecord(val element: String, val round: Int) {
+        val phases = linkedMapOf<String, Long>()
+    }
+
+    companion object {
+        const val OPTION_PROFILE = "wsannotations.profile"
+        const val OPTION_PROFILE_DIR = "wsannotations.profile.dir"
+
+        const val PHASE_GENERATION_DATA = "generationData"
+        const val PHASE_MODEL_RESOLUTION = "modelResolution"
+        const val PHASE_CODE_BUILDING = "codeBuilding"
+        const val PHASE_WRITE = "writeTo"
+
+        /**
+         * Generated sources dir is located inside module build dir (`build/generated/source/kaptKotlin/<variant>`), so report dir
+         * is resolved relative to it
+         */
+        fun from(options: Map<String, String>, generationPath: File, processorName: String): ProcessingProfiler {
+            if (options[OPTION_PROFILE]?.toBoolean() != true) return ProcessingProfiler(processorName, null)
+            val reportDir = options[OPTION_PROFILE_DIR]?.let { File(it) }
+                    ?: generateSequence(generationPath.absoluteFile) { it.parentFile }.firstOrNull { it.name == "build" }?.let { File(it, "reports/wsannotations") }
+                    ?: File(generationPath, "wsannotations")
+            return ProcessingProfiler(processorName, reportDir)
+        }
+    }
+}
@@ -16,13 +16,11 @@
 package name.wildswift.android.kanprocessor
 
 
-import com.squareup.kotlinpoet.*
 import name.wildswift.android.kannotations.RandomFunction
-import name.wildswift.android.kannotations.RandomFunctionType
 import name.wildswift.android.kannotations.RandomFunctions
-import name.wildswift.android.kanprocessor.utils.resolveKotlinVisibility
-import name.wildswift.android.kanprocessor.utils.safeGetType
-import java.util.*
+import name.wildswift.android.kanprocessor.datahelpers.ElementsAnnotationReader
+import name.wildswift.android.kanprocessor.datahelpers.RandomFunctionData
+import name.wildswift.android.kanprocessor.generators.RandomFunctionsGenerator.buildRandomizerFile
 import javax.annotation.processing.RoundEnvironment
 import javax.annotation.processing.SupportedAnnotationTypes
 import javax.annotation.processing.SupportedSourceVersion
@@ -38,82 +36,39 @@ import javax.tools.Diagnostic
 @SupportedAnnotationTypes("name.wildswift.android.kannotations.RandomFunctions", "name.wildswift.android.kannotations.RandomFunction")
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
 class RandomFunctionsAnnotationProcessor : KotlinAbstractProcessor() {
-    private val randomizer by lazy { Random() }
+    private val seed by lazy { RandomFunctionsSeed.from(processingEnv.options) }
+
+    override fun getSupportedOptions() = super.getSupportedOptions() + RandomFunctionsSeed.OPTIONS
 
     override fun process(annotations: Set<TypeElement>, roundEnv: RoundEnvironment): Boolean {
-        roundEnv.getElementsAnnotatedWith(RandomFunctions::class.java).forEach {
-            if (it.kind != ElementKind.CLASS) {
-                processingEnv.messager.printMessage(Diagnostic.Kind.ERROR, "Can be applied to class.")
-                throw IllegalArgumentException()
-            }
-            (it as? TypeElement)?.apply {
-                writeSourceFile(simpleName.toString(), processingEnv.elementUtils.getPackageOf(it).toString(), it.getAnnotation(RandomFunctions::class.java).value, resolveKotlinVisibility(it))
-            }
-        }
-        roundEnv.getElementsAnnotatedWith(RandomFunction::class.java).forEach {
-            if (it.kind != ElementKind.CLASS) {
-                processingEnv.messager.printMessage(Diagnostic.Kind.ERROR, "Can be applied to class.")
-                throw IllegalArgumentException()
-            }
-            (it as? TypeElement)?.apply {
-                writeSourceFile(simpleName.toString(), processingEnv.elementUtils.getPackageOf(it).toString(), arrayOf(it.getAnnotation(RandomFunction::class.java)), resolveKotlinVisibility(it))
-            }
+        if (roundEnv.processingOver()) {
+            profiler.writeReport()
+            return true
         }
-        return true
-    }
-
-    private fun writeSourceFile(className: String, pack: String, annotations: Array<RandomFunction>, visibilityModifier: KModifier) {
-        val fileName = "_${className}Randomizer"
-
-        val fileBuilder = FileSpec
-                .builder(pack, fileName)
-
-        fileBuilder.addAnnotation(AnnotationSpec.builder(Suppress::class.asTypeName())
-                .addMember("\"NOTHING_TO_INLINE\"")
-                .build())
-
-        annotations.forEach { annotation ->
-            if (annotation.dictionary.isEmpty()) throw IllegalArgumentException("Dictionary can't be empty")
-            annotation.dictionary.forEach {
-                val importPack = it.split("\\.").let { it.subList(0, it.size - 1) }.fold(StringBuilder()) { cur, new -> if (cur.isNotEmpty()) cur.append(".").append(new) else cur.append(new) }.toString()
-                val importName = it.split("\\.").last()
-                if (importPack.isNotEmpty()) {
-                    fileBuilder.addImport(importPack, importName)
+        val elementsCount = roundEnv.getElementsAnnotatedWith(RandomFunctions::class.java).size + roundEnv.getElementsAnnotatedWith(RandomFunction::class.java).size
+        val reader = ElementsAnnotationReader(processingEnv)
+        profiler.round(elementsCount) {
+            roundEnv.getElementsAnnotatedWith(RandomFunctions::class.java).forEach {
+                if (it.kind != ElementKind.CLASS) {
+                    processingEnv.messager.printMessage(Diagnostic.Kind.ERROR, "Can be applied to class.")
+                    throw IllegalArgumentException()
+                }
+                (it as? TypeElement)?.apply {
+                    val data = reader.annotation(it, RandomFunctions::class.java)!!.annotations("value").map { RandomFunctionData.from(it) }
+                    sourceWriter.write(buildRandomizerFile(simpleName.toString(), reader.packageOf(it), data, reader.visibility(this), seed.randomizerFor(qualifiedName.toString(), data), it))
                 }
             }
-            if (annotation.type == RandomFunctionType.boolCheck) {
-                (1..annotation.count).forEach {
-                    val selectedFunction = randomizer
-                            .nextInt(annotation.dictionary.size)
-                            .let {
-                                annotation.dictionary[it].split("\\.").last()
-                            }
-                    val funSpec = FunSpec.builder("${annotation.perfix}$it")
-
-                    annotation.parameters.forEach { paramSpec ->
-                        funSpec.addParameter(paramSpec.name, paramSpec
-                                .safeGetType { this.type }
-                                .copy(nullable = paramSpec.nullable)
-                        )
-                    }
-
-
-
-                    funSpec.receiver(ClassName(pack, className))
-                            .returns(Boolean::class.java)
-                            .addModifiers(visibilityModifier)
-                            .addModifiers(KModifier.INLINE)
-                            .addStatement("return $selectedFunction(${annotation.parameters.joinToString { it.name }})")
-
-                    fileBuilder.addFunction(funSpec.build())
-
+            roundEnv.getElementsAnnotatedWith(RandomFunction::class.java).forEach {
+                if (it.kind != ElementKind.CLASS) {
+                    processingEnv.messager.printMessage(Diagnostic.Kind.ERROR, "Can be applied to class.")
+                    throw IllegalArgumentException()
+                }
+                (it as? TypeElement)?.apply {
+                    val data = reader.annotations(it, RandomFunction::class.java).map { RandomFunctionData.from(it) }
+                    sourceWriter.write(buildRandomizerFile(simpleName.toString(), reader.packageOf(it), data, reader.visibility(this), seed.randomizerFor(qualifiedName.toString(), data), it))
                 }
             }
         }
-
-
-        val file = fileBuilder.build()
-
-        file.writeTo(generationPath)
+        return true
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor
+
+import name.wildswift.android.kanprocessor.datahelpers.RandomFunctionData
+import java.nio.ByteBuffer
+import java.security.MessageDigest
+import java.util.*
+
+/**
+ * Selects functions from dictionaries of random functions.
+ *
+ * By default selection is derived from class name and dictionaries content, so generated files are the same in every build
+ * and build cache stays valid. Base seed may be set by `wsannotations.random.seed` or derived from `wsannotations.random.version`
+ * (for example version name of application), then selection changes only with seed or version. With `wsannotations.random.rotate=true`
+ * selection changes in every build, as it was before. It is supposed to be used only for release builds
+ */
+class RandomFunctionsSeed(private val baseSeed: String) {
+
+    /**
+     * Every class gets own generator, so selection for class doesn't depend on other classes and order of processing,
+     * and is not changed by incremental builds until class or its dictionaries are changed
+     */
+    fun randomizerFor(qualifiedClassName: String, annotations: List<RandomFunctionData>): Random {
+        val digest = MessageDigest.getInstance("SHA-256")
+        (listOf(baseSeed, qualifiedClassName) + annotations.flatMap { it.dictionary }).forEach {
+            digest.update(it.toByteArray())
+            digest.update(0)
+        }
+        return Random(ByteBuffer.wrap(digest.digest()).long)
+    }
+
+    companion object {
+        const val OPTION_SEED = "wsannotations.random.seed"
+        const val OPTION_VERSION = "wsannotations.random.version"
+        const val OPTION_ROTATE = "wsannotations.random.rotate"
+
+        val OPTIONS = setOf(OPTION_SEED, OPTION_VERSION, OPTION_ROTATE)
+
+        fun from(options: Map<String, String>) = RandomFunctionsSeed(when {
+            options[OPTION_ROTATE]?.toBoolean() == true -> "rotate:${Random().nextLong()}"
+            options[OPTION_SEED] != null -> "seed:${options[OPTION_SEED]}"
+            options[OPTION_VERSION] != null -> "version:${options[OPTION_VERSION]}"
+            else -> ""
+        })
+    }
+}
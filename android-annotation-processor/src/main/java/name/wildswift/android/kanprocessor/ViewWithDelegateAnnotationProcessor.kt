@@ -16,25 +16,24 @@
 
 package name.wildswift.android.kanprocessor
 
-import com.squareup.kotlinpoet.*
-import com.squareup.kotlinpoet.ParameterizedTypeName.Companion.parameterizedBy
-import name.wildswift.android.kannotations.ListImplementation
-import name.wildswift.android.kannotations.ViewProperty
+import com.squareup.kotlinpoet.asClassName
 import name.wildswift.android.kannotations.ViewWithDelegate
 import name.wildswift.android.kannotations.interfaces.ViewDelegate
-import name.wildswift.android.kanprocessor.datahelpers.ListFieldGenerationData
-import name.wildswift.android.kanprocessor.datahelpers.PropertyData
+import name.wildswift.android.kanprocessor.ProcessingProfiler.Companion.PHASE_CODE_BUILDING
+import name.wildswift.android.kanprocessor.ProcessingProfiler.Companion.PHASE_GENERATION_DATA
+import name.wildswift.android.kanprocessor.ProcessingProfiler.Companion.PHASE_MODEL_RESOLUTION
+import name.wildswift.android.kanprocessor.ProcessingProfiler.Companion.PHASE_WRITE
+import name.wildswift.android.kanprocessor.datahelpers.DelegateIndex
+import name.wildswift.android.kanprocessor.datahelpers.DelegateRoundsState
+import name.wildswift.android.kanprocessor.datahelpers.ElementsAnnotationReader
+import name.wildswift.android.kanprocessor.datahelpers.ElementsDelegateTypeResolver
+import name.wildswift.android.kanprocessor.datahelpers.UnresolvedTypeException
 import name.wildswift.android.kanprocessor.datahelpers.ViewWithDelegateGenerationData
-import name.wildswift.android.kanprocessor.generators.DataClassGenerator.generateDataClass
-import name.wildswift.android.kanprocessor.generators.DelegatedMethodsGenerator.buildDelegatedMethods
-import name.wildswift.android.kanprocessor.generators.ListAdapterGenerator.buildOldAdapterClass
-import name.wildswift.android.kanprocessor.generators.ListAdapterGenerator.buildRecyclerAdapterClass
-import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.buildFieldsSpecs
-import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.buildListenersSpecs
-import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.internalModelProperty
-import name.wildswift.android.kanprocessor.generators.StateSerializationGenerator.buildDeserializeStateMethod
-import name.wildswift.android.kanprocessor.generators.StateSerializationGenerator.buildSerializeStateMethod
-import name.wildswift.android.kanprocessor.utils.*
+import name.wildswift.android.kanprocessor.generators.ViewClassGenerator.buildViewFiles
+import name.wildswift.android.kanprocessor.generators.ViewClassGenerator.resolveModel
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
 import javax.annotation.processing.RoundEnvironment
 import javax.annotation.processing.SupportedAnnotationTypes
 import javax.annotation.processing.SupportedSourceVersion
@@ -47,6 +46,7 @@ import javax.lang.model.type.DeclaredType
 import javax.lang.model.type.TypeVisitor
 import javax.lang.model.util.SimpleTypeVisitor8
 import javax.tools.Diagnostic
+import javax.tools.StandardLocation
 
 /**
  * Created by swift
@@ -56,32 +56,104 @@ import javax.tools.Diagnostic
 class ViewWithDelegateAnnotationProcessor : KotlinAbstractProcessor() {
 
     private val checkViewDelegateVisitor: TypeVisitor<Boolean, Any?> = object : SimpleTypeVisitor8<Boolean, Any?>() {
+        // Delegate may extend ViewDelegate through own base classes
         override fun visitDeclared(t: DeclaredType, p: Any?): Boolean {
-            return (t.asElement() as? TypeElement)?.asClassName() == ViewDelegate::class.asClassName()
+            val element = t.asElement() as? TypeElement ?: return false
+            return element.asClassName() == ViewDelegate::class.asClassName() || element.superclass.accept(this, p) == true
         }
     }
 
-    private var processingTypeMap: Map<String, ViewWithDelegateGenerationData> = mapOf()
+    private val parallel by lazy { processingEnv.options[OPTION_PARALLEL]?.toBoolean() == true }
 
-    override fun getSupportedOptions() = setOf("application.id")
+    private val roundsState = DelegateRoundsState()
+
+    override fun getSupportedOptions() = super.getSupportedOptions() + "application.id" + OPTION_PARALLEL
 
     override fun process(annotations: MutableSet<out TypeElement>?, roundEnv: RoundEnvironment): Boolean {
+        // Elements are not valid between rounds, so deferred delegates are looked up again by name
+        val deferred = roundsState.nextRound()
+        if (roundEnv.processingOver()) {
+            deferred.forEach { (delegateName, unresolved) ->
+                processingEnv.messager.printMessage(Diagnostic.Kind.ERROR, DelegateRoundsState.unresolvedMessage(delegateName, unresolved), processingEnv.elementUtils.getTypeElement(delegateName))
+            }
+            profiler.writeReport()
+            return true
+        }
         val appId = processingEnv.options["application.id"]
                 ?: throw IllegalArgumentException("Argument \"application.id\" is not set. Please add \"kapt\" -> \"arguments\" -> \"arg(\"application.id\", <value>)\"")
         val envConstants = ProcessingEnvConstants(appId = appId)
 
         val processingElements = roundEnv.getElementsAnnotatedWith(ViewWithDelegate::class.java)
         validate(processingElements)
+        val deferredElements = deferred.keys.mapNotNull { processingEnv.elementUtils.getTypeElement(it) }
+
+        val reader = ElementsAnnotationReader(processingEnv)
+        val typeResolver = roundsState.resolverFor(ElementsDelegateTypeResolver(reader))
+
+        profiler.round(processingElements.size + deferredElements.size) {
+            // Elements and Types are not thread safe, so everything that touches them is done before spec building
+            val generationData = (processingElements.filterIsInstance<TypeElement>() + deferredElements)
+                    .distinct()
+                    .mapNotNull { element ->
+                        val elementName = element.qualifiedName.toString()
+                        try {
+                            elementName to profiler.measure(elementName, PHASE_GENERATION_DATA) { ViewWithDelegateGenerationData.from(element, reader) }
+                        } catch (e: UnresolvedTypeException) {
+                            roundsState.defer(elementName, listOf("type of \"${e.memberName}\""))
+                            null
+                        }
+                    }
+            generationData.forEach { (_, data) -> roundsState.register(data.generatedTypes) }
+
+            val delegates = generationData
+                    .filter { (_, data) -> roundsState.deferIfUnresolved(data, typeResolver) }
+                    .map { (elementName, data) ->
+                        val model = profiler.measure(elementName, PHASE_MODEL_RESOLUTION) { resolveModel(data, typeResolver) }
+                        Triple(elementName, data, model)
+                    }
+            val specTypeResolver = typeResolver.snapshot(delegates.flatMap { it.second.referencedDelegates }.distinct())
 
-        processingTypeMap = processingElements
-                .mapNotNull { (it as? TypeElement)?.let { ViewWithDelegateGenerationData.from(it, processingEnv) } }
-                .map { it.delegateType.canonicalName to it }
-                .toMap()
+            val buildTasks = delegates.map { (elementName, data, model) ->
+                Callable { profiler.measure(elementName, PHASE_CODE_BUILDING) { buildViewFiles(data, model, specTypeResolver, envConstants) } }
+            }
+            val files = if (parallel && buildTasks.size > 1) buildInParallel(buildTasks) else buildTasks.map { it.call() }
 
-        processingTypeMap.values.forEach { writeExtensionsFile(it, envConstants) }
+            delegates.zip(files).forEach { (delegate, fileSpecs) ->
+                val (elementName, data) = delegate
+                profiler.measure(elementName, PHASE_WRITE) {
+                    fileSpecs.forEach { sourceWriter.write(it) }
+                    writeDelegateIndex(data)
+                }
+            }
+        }
         return true
     }
 
+    private fun <T> buildInParallel(tasks: List<Callable<T>>): List<T> {
+        val pool = ForkJoinPool()
+        try {
+            return pool.invokeAll(tasks).map {
+                try {
+                    it.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    /**
+     * Index lets modules, that depend on this one, reference delegate in `byDelegate`
+     */
+    private fun writeDelegateIndex(data: ViewWithDelegateGenerationData) {
+        processingEnv.filer
+                .createResource(StandardLocation.CLASS_OUTPUT, "", DelegateIndex.resourcePath(data.delegateType.canonicalName), data.originatingElement)
+                .openWriter()
+                .use { it.write(DelegateIndex.encode(data.generatedTypes)) }
+    }
+
     private fun validate(processingElements: MutableSet<out Element>) {
         processingElements.forEach {
             if (it.kind != ElementKind.CLASS) {
@@ -98,367 +170,10 @@ class ViewWithDelegateAnnotationProcessor : KotlinAbstractProcessor() {
         }
     }
 
-    private fun writeExtensionsFile(data: ViewWithDelegateGenerationData, envConstants: ProcessingEnvConstants) {
-        val delegateProperty = PropertySpec.builder("delegate", data.delegateType).addModifiers(KModifier.PRIVATE).initializer("%T(this)", data.delegateType).build()
-        val childrenUpdateProperty = PropertySpec.builder("childrenUpdate", BOOLEAN).addModifiers(KModifier.PRIVATE).mutable().initializer("false").build()
-
-        val internalProperties = data
-                .basicFields
-                .map {
-                    val (defaultValuePattern, defaultValueClass) = it.resolveDefaultValue(processingTypeMap, processingEnv.elementUtils)
-                    PropertyData(
-                            it.name,
-                            it.resolveType(processingTypeMap),
-                            defaultValuePattern,
-                            defaultValueClass
-                    )
-                }
-                .plus(data.collectionFields.map {
-                    PropertyData(
-                            it.name,
-                            itemsDSClass.parameterizedBy(it.getModelType(processingTypeMap)),
-                            "%T()",
-                            emptyIDSClass
-                    )
-                })
-
-
-        val publicModelProperties = data
-                .basicFields
-                .filter { it.rwType.public }
-                .map {
-                    val (defaultValuePattern, defaultValueClass) = it.resolveDefaultValue(processingTypeMap, processingEnv.elementUtils)
-                    PropertyData(
-                            it.name,
-                            it.resolveType(processingTypeMap),
-                            defaultValuePattern,
-                            defaultValueClass
-                    )
-                }
-                .plus(data.collectionFields.filter { it.rwType.public }.map {
-                    PropertyData(
-                            it.name,
-                            itemsDSClass.parameterizedBy(it.getModelType(processingTypeMap)),
-                            "%T()",
-                            emptyIDSClass
-                    )
-                })
-
-        val publicMutableProperties = data
-                .basicFields
-                .filter { it.rwType.mutablePublic }
-                .map {
-                    val (defaultValuePattern, defaultValueClass) = it.resolveDefaultValue(processingTypeMap, processingEnv.elementUtils)
-                    PropertyData(
-                            it.name,
-                            it.resolveType(processingTypeMap),
-                            defaultValuePattern,
-                            defaultValueClass
-                    )
-                }
-                .plus(data.collectionFields.filter { it.rwType.public }.map {
-                    PropertyData(
-                            it.name,
-                            itemsDSClass.parameterizedBy(it.getModelType(processingTypeMap)),
-                            "%T()",
-                            emptyIDSClass
-                    )
-                })
-
-
-        val listFieldsGenerationData = data
-                .collectionFields
-                .map { listField ->
-                    val adapter = when (listField.listImplementation) {
-                        ListImplementation.ListView -> {
-                            buildOldAdapterClass(listField, processingTypeMap)
-                        }
-                        ListImplementation.RecyclerView -> {
-                            buildRecyclerAdapterClass(listField, processingTypeMap)
-                        }
-                    }
-                    ListFieldGenerationData(listField.name, listField.listImplementation, listField.childName, adapter)
-                }
-
-        val publicModelClass = if (data.rootAnnotation.generateViewDataObject) generateDataClass(data.externalModelType, publicModelProperties, generationPath) else null
-        val internalModelClass = generateDataClass(data.internalModelType, internalProperties, generationPath)
-        val internalModelProperty = internalModelClass?.let { internalModelProperty(data, delegateProperty, listFieldsGenerationData, childrenUpdateProperty) }
-
-        val listeners = buildListenersSpecs(data.basicFields, processingTypeMap)
-
-        val onPublicModelChangedListener =
-                if (publicModelClass != null) {
-                    PropertySpec
-                            .builder("onViewModelChanged", LambdaTypeName.get(parameters = listOf(ParameterSpec.unnamed(data.externalModelType)), returnType = Unit::class.asTypeName()).copy(nullable = true))
-                            .mutable()
-                            .initializer("null")
-                            .build()
-                } else {
-                    null
-                }
-
-        val notifyChangedFun = publicModelProperties
-                .takeIf { it.isNotEmpty() }
-                ?.let { createNotifyChanged(listeners, data.internalModelType, it, data.externalModelType, onPublicModelChangedListener) }
-
-        val publicModelProperty =
-                if (publicModelClass != null)
-                    PropertySpec
-                            .builder("viewModel", data.externalModelType)
-                            .getter(FunSpec.getterBuilder().addStatement("return %1T(\n" +
-                                    "⇥⇥${publicModelProperties.joinToString(", \n") { "${it.name} = %2N.${it.name}" }}\n" +
-                                    "⇤⇤)", data.externalModelType, internalModelProperty!!).build())
-                            .mutable()
-                            .setter(
-                                    FunSpec.setterBuilder()
-                                            .addParameter(ParameterSpec.builder("value", data.externalModelType).build())
-                                            .addStatement("if (${publicMutableProperties.joinToString("·&& ") { "%1N.${it.name}·==·value.${it.name}" }}) return", internalModelProperty)
-                                            .addStatement("val oldValue = %1N", internalModelProperty)
-                                            .addStatement("val newValue = %1N.copy(\n" +
-                                                    "⇥⇥${publicMutableProperties.joinToString { "${it.name} = value.${it.name}" }}\n" +
-                                                    "⇤⇤)", internalModelProperty)
-                                            .addStatement("%1N = %2N.validateStateForNewInput(newValue)", internalModelProperty, delegateProperty)
-                                            .apply {
-                                                data.basicFields.filter { it.rwType.notifyExtChanges }.forEach {
-                                                    val listener = listeners.toMap()[it.name]
-                                                    if (listener != null)
-                                                        addStatement("if·(oldValue.${it.name}·!=·value.${it.name})·%1N?.invoke(value.${it.name})", listener)
-                                                }
-                                                if (notifyChangedFun != null) {
-                                                    addStatement("%1N(newValue, %2N)", notifyChangedFun, internalModelProperty)
-                                                }
-                                            }
-                                            .addStatement("%1N?.invoke(value)", onPublicModelChangedListener!!)
-                                            .build()
-                            )
-                            .build()
-                else
-                    null
-
-        val saveStateMethod = if (data.basicFields.isNotEmpty() && data.rootAnnotation.saveInstanceState) buildSerializeStateMethod(internalProperties, internalModelProperty) else null
-        val restoreStateMethod = if (data.basicFields.isNotEmpty() && data.rootAnnotation.saveInstanceState) buildDeserializeStateMethod(data, internalModelProperty, internalProperties) else null
-
-        val viewClassSpec = TypeSpec
-                .classBuilder(data.generateViewType)
-                .addModifiers(data.visibilityModifier)
-                .superclass(data.rootAnnotation.safeGetType { parent })
-                .addViewConstructors {
-                    if (data.attrs.isNotEmpty() && it > 1) {
-                        addStatement("setAttrs(context, attrs)")
-                    }
-                    this
-                }
-                .addProperty(delegateProperty)
-                .addProperty(childrenUpdateProperty)
-                .apply {
-                    if (internalModelProperty != null) addProperty(internalModelProperty)
-                    if (publicModelProperty != null) addProperty(publicModelProperty)
-                    if (onPublicModelChangedListener != null) addProperty(onPublicModelChangedListener)
-                }
-
-
-        val fieldsProperties = internalModelProperty?.let { buildFieldsSpecs(data, listeners.toMap(), internalModelProperty, delegateProperty, notifyChangedFun, processingTypeMap) }
-                ?: listOf()
-
-        fieldsProperties.forEach { field ->
-            viewClassSpec.addProperty(field.readWriteProperty)
-            field.listenerProperty?.apply {
-                viewClassSpec.addProperty(field.listenerProperty)
-            }
-        }
-
-        data.events.forEach {
-            PropertySpec
-                    .builder(it.name, LambdaTypeName.get(returnType = Unit::class.asTypeName()).copy(nullable = true))
-                    .mutable()
-                    .initializer("null")
-                    .build()
-                    .apply {
-                        viewClassSpec.addProperty(this)
-                    }
-        }
-
-        viewClassSpec
-                .addProperties(data.collectionFields.flatMap { collectionField ->
-                    collectionField
-                            .elementEvents
-                            .map {
-                                PropertySpec.builder(it.name, LambdaTypeName.get(null, listOf(ParameterSpec.unnamed(collectionField.getModelType(processingTypeMap))), UNIT).copy(nullable = true)).mutable().initializer("null").build()
-                            }
-
-                }
-                )
-
-        viewClassSpec.addInitializerBlock(
-                CodeBlock.builder()
-                        .also {
-                            if (data.layoutName.isNotEmpty()) {
-                                it.addStatement("inflate(context, R.layout.${data.layoutName}, this)")
-                            }
-                        }
-                        .addStatement("%1N.setupView()", delegateProperty)
-                        .also { codeBlockBuilder ->
-                            data.events
-                                    .filter { event -> event.childName.isNotBlank() }
-                                    .forEach { event ->
-                                        codeBlockBuilder.add("${event.childName}.${event.resolveListener("${event.name}?.invoke()")}")
-                                    }
-                        }
-                        .also { codeBlockBuilder ->
-                            data.basicFields
-                                    .filter { it.childName.isNotEmpty() }
-                                    .filter { it.activeChild }
-                                    .groupBy { it.childName }
-                                    .forEach { (child, value) ->
-                                        var propertiesList = value
-                                        while (propertiesList.isNotEmpty()) {
-                                            val viewField = propertiesList[0]
-                                            when {
-                                                viewField.byProperty != ViewProperty.none -> {
-                                                    val listenerGroup = viewField.byProperty.getListenerGroup()
-                                                    if (listenerGroup.isEmpty()) throw throw IllegalStateException("ViewProperty.${viewField.byProperty} not supports activeChild flag")
-                                                    listenerGroup.mapNotNull { property -> propertiesList.find { it.byProperty == property } }
-                                                            .let { viewFields ->
-                                                                """
-                                                                    |    if ((${viewFields.joinToString(separator = " || ") { "%1N.${it.name} != ${it.byProperty.getListenerPropertyName()}" }}) && !%4N) {
-                                                                    |        val oldModel = %1N
-                                                                    |        %1N = %2N.validateStateForOutput(
-                                                                    |                %1N.copy(
-                                                                    |${viewFields.joinToString(separator = ",\n") { "                    ${it.name} = ${it.byProperty.getListenerPropertyName()}" }}
-                                                                    |                )
-                                                                    |        )
-                                                                    |        %2N.onNewInternalState(%1N)
-                                                                    |        %3N(oldModel, %1N)
-                                                                    |    }
-                                                                    |
-                                                                """.trimMargin()
-                                                            }
-                                                            .also { listenerGroup.first().buildListener(child, it, internalModelProperty!!, delegateProperty, notifyChangedFun, childrenUpdateProperty, codeBlockBuilder) }
-
-                                                    propertiesList = propertiesList.filter { !listenerGroup.contains(it.byProperty) }
-                                                }
-                                                viewField.checkIsVoid { byDelegate } -> {
-                                                    codeBlockBuilder.add(""""
-                                                            |$child.onViewModelChanged = { newValue ->
-                                                            |    if (%1N.${viewField.name} != newValue && !%4N) {
-                                                            |        val oldModel = %1N
-                                                            |        %1N = %2N.validateStateForOutput(%1N.copy(${viewField.name} = newValue))
-                                                            |        %2N.onNewInternalState(%1N)
-                                                            |        %3N(oldModel, %1N)
-                                                            |    }
-                                                            |}
-                                                        """.trimMargin(), internalModelProperty!!, delegateProperty, notifyChangedFun, childrenUpdateProperty)
-                                                    propertiesList = propertiesList.drop(1)
-                                                }
-                                                else -> {
-                                                    codeBlockBuilder.add(""""
-                                                            |$child.${viewField.childPropertyListener} = { ${viewField.childPropertyListenerParams} ->
-                                                            |    if (%1N.${viewField.name} != newValue && !%4N) {
-                                                            |        val oldModel = %1N
-                                                            |        %1N = %2N.validateStateForOutput(%1N.copy(${viewField.name} = newValue))
-                                                            |        %2N.onNewInternalState(%1N)
-                                                            |        %3N(oldModel, %1N)
-                                                            |    }
-                                                            |}
-                                                        """.trimMargin(), internalModelProperty!!, delegateProperty, notifyChangedFun, childrenUpdateProperty)
-                                                    propertiesList = propertiesList.drop(1)
-                                                }
-                                            }
-                                        }
-                                    }
-
-                        }
-                        .build()
-        )
-
-
-        if (data.attrs.isNotEmpty()) {
-            val setAttrsFun = FunSpec
-                    .builder("setAttrs")
-                    .addModifiers(KModifier.PRIVATE)
-                    .addParameter("context", contextClass)
-                    .addParameter("attrs", ClassName("android.util", "AttributeSet").copy(nullable = true))
-                    .addStatement("if (attrs == null) return")
-                    .addStatement("val styleAttrs = context.obtainStyledAttributes(attrs, R.styleable.${data.generateViewType.simpleName})")
-
-            data.attrs.forEach {
-                val propertyName = if (it.fieldName.isBlank()) it.reference else it.fieldName
-                if (data.basicFields.find { it.rwType.public && it.name == propertyName } == null) {
-                    viewClassSpec.addProperty(PropertySpec
-                            .builder(propertyName, it.type.fieldClass())
-                            .mutable()
-                            .initializer(it.type.initValue())
-                            .build()
-                    )
-                }
-
-                setAttrsFun.addStatement("$propertyName = styleAttrs.${it.type.loadCode("R.styleable.${data.generateViewType.simpleName}_${it.reference}")}")
-            }
-
-            setAttrsFun.addStatement("styleAttrs.recycle()")
-            viewClassSpec.addFunction(setAttrsFun.build())
-
-        }
-
-        viewClassSpec
-                .delegateCall("onAttachedToWindow", delegateProperty, "onShow")
-                .delegateCall("onDetachedFromWindow", delegateProperty, "onHide")
-
-        saveStateMethod?.apply {
-            viewClassSpec.addFunction(this)
-            viewClassSpec.generateViewSave(this)
-        }
-
-        restoreStateMethod?.apply {
-            viewClassSpec.addFunction(this)
-            viewClassSpec.generateViewRestore(this)
-        }
-
-        if (notifyChangedFun != null) {
-            viewClassSpec.addFunction(notifyChangedFun)
-        }
-
-        buildDelegatedMethods(data.delegatedMethods, delegateProperty).forEach { viewClassSpec.addFunction(it) }
-
-
-        listFieldsGenerationData
-                .forEach { (_, _, _, adapter) ->
-                    viewClassSpec.addType(adapter)
-                }
-
-        FileSpec
-                .builder(data.generateViewType.packageName, data.generateViewType.simpleNames.first())
-                .addImport(envConstants.appId, "R")
-                .addImport(viewClass, "inflate")
-                .also {
-                    if (data.layoutName.isNotEmpty()) {
-                        it.addImport("kotlinx.android.synthetic.main.${data.layoutName}.view", data.basicFields.mapNotNull { it.childName.takeIf { it.isNotBlank() && it != "this" } } + data.events.mapNotNull { it.childName.takeIf { it.isNotBlank() && it != "this" } } + data.collectionFields.mapNotNull { it.childName.takeIf { it.isNotBlank() && it != "this" } })
-                    }
-                }
-                .addImport("name.wildswift.android.kannotations.util", "put")
-                .addType(viewClassSpec.build())
-                .build()
-                .writeTo(generationPath)
-    }
-
-
-    private fun createNotifyChanged(methodsMapping: List<Pair<String, PropertySpec>>, internalModelType: ClassName, publicFields: List<PropertyData>, publicModelType: ClassName, publicModelChangedListener: PropertySpec?): FunSpec {
-        val notifyChangedOldModel = ParameterSpec.builder("oldModel", internalModelType).build()
-        val notifyChangedCurrentModel = ParameterSpec.builder("currentModel", internalModelType).build()
-        val notifyChangedFunBuilder = FunSpec
-                .builder("notifyChanged")
-                .addModifiers(KModifier.PRIVATE)
-                .addParameter(notifyChangedOldModel)
-                .addParameter(notifyChangedCurrentModel)
-                .apply {
-                    if (publicModelChangedListener != null) {
-                        addStatement("if (${publicFields.joinToString(" || ") { "%1N.${it.name} != %2N.${it.name}" }}) %3N?.invoke(%4T(${publicFields.joinToString { "${it.name} = %2N.${it.name}" }}))", notifyChangedOldModel, notifyChangedCurrentModel, publicModelChangedListener, publicModelType)
-                    }
-                }
-
-        methodsMapping.forEach { (name, listenerProperty) ->
-            notifyChangedFunBuilder.addStatement("if (%1N.${name} != %2N.${name}) %3N?.invoke(%2N.${name})", notifyChangedOldModel, notifyChangedCurrentModel, listenerProperty)
-        }
-        return notifyChangedFunBuilder.build()
+    companion object {
+        /**
+         * Builds code of independent delegates concurrently. Files are still written from processing thread
+         */
+        const val OPTION_PARALLEL = "wsannotations.parallel"
     }
-}
\ No newline at end of file
+}
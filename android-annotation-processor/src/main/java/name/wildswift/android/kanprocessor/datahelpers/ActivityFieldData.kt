@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.TypeName
+import name.wildswift.android.kannotations.ActivityField
+
+/**
+ * Values of [ActivityField] annotation
+ */
+data class ActivityFieldData(
+        val name: String,
+        val type: TypeName,
+        val nullable: Boolean
+) {
+    companion object {
+        fun from(annotation: AnnotationValues) = ActivityFieldData(
+                name = annotation.string("name"),
+                type = annotation.type("type"),
+                nullable = annotation.boolean("nullable")
+        )
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.TypeName
+import name.wildswift.android.kanprocessor.utils.asKotlinTypeName
+import javax.lang.model.element.AnnotationMirror
+import javax.lang.model.element.AnnotationValue
+import javax.lang.model.element.VariableElement
+import javax.lang.model.type.TypeKind
+import javax.lang.model.type.TypeMirror
+import javax.lang.model.util.Elements
+
+/**
+ * Values of annotation members read from [AnnotationMirror], including defaults. Class members are available as [TypeMirror]
+ * without `MirroredTypeException`, enum members as [VariableElement] and nested annotations as [AnnotationMirror]
+ */
+class AnnotationValues(private val values: Map<String, Any?>, private val elements: Elements) {
+
+    fun string(name: String) = values[name] as String
+
+    fun boolean(name: String) = values[name] as Boolean
+
+    fun int(name: String) = values[name] as Int
+
+    inline fun <reified T : Enum<T>> enum(name: String) = enumValueOf<T>(enumConstantName(name))
+
+    fun enumConstantName(name: String) = (values[name] as VariableElement).simpleName.toString()
+
+    /**
+     * Class literal of type, that is not generated yet, is represented as error type or as `"<error>"` string
+     */
+    fun type(name: String): TypeName {
+        val value = values[name] as? TypeMirror
+        if (value == null || value.kind == TypeKind.ERROR) throw UnresolvedTypeException(name)
+        return value.asKotlinTypeName()
+    }
+
+    /**
+     * Class member set to `Void` is represented as `null`
+     */
+    fun nonVoidType(name: String): TypeName? = type(name).takeIf { it.toString() != "java.lang.Void" }
+
+    fun strings(name: String) = array(name).map { it as String }
+
+    fun annotations(name: String) = array(name).map { of(it as AnnotationMirror, elements) }
+
+    private fun array(name: String) = (values[name] as List<*>).map { (it as AnnotationValue).value }
+
+    companion object {
+        fun of(mirror: AnnotationMirror, elements: Elements) = AnnotationValues(
+                elements.getElementValuesWithDefaults(mirror).entries.associate { (key, value) -> key.simpleName.toString() to value.value },
+                elements
+        )
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.PropertySpec
+
+/**
+ * Properties of generated view, that collect state changes made inside of `batch` block until the block is finished.
+ * Views with mutable state have no [pendingModelProperty] and [inputModelProperty]
+ */
+data class BatchGenerationData(
+        val depthProperty: PropertySpec,
+        val pendingModelProperty: PropertySpec?,
+        val pendingChangesProperty: PropertySpec,
+        val pendingViewModelProperty: PropertySpec?,
+        val inputModelProperty: PropertySpec?
+) {
+    val properties get() = listOfNotNull(depthProperty, pendingModelProperty, pendingChangesProperty, pendingViewModelProperty, inputModelProperty)
+}
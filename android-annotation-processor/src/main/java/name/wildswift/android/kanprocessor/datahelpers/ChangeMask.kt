@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.*
+import name.wildswift.android.kanprocessor.utils.toScreamingCase
+
+/**
+ * Bitmask of changed properties of view internal state. Mask is computed once per state update and passed to child setters
+ * and listeners, so they check bit instead of comparing values.
+ *
+ * Every property gets own bit constant in companion of state class. Mask is `Int` for up to 32 properties and `Long` for up to 64.
+ * If state has more properties, last bit is shared by the rest of them, and values of these properties are compared additionally
+ */
+class ChangeMask(private val stateType: ClassName, properties: List<PropertyData>) {
+    private val names = properties.map { it.name }
+
+    val type: TypeName = if (names.size <= Int.SIZE_BITS) INT else LONG
+
+    val zero = if (type == INT) "0" else "0L"
+
+    fun constantName(name: String) = "${name.toScreamingCase()}_CHANGED"
+
+    fun constantValue(name: String): CodeBlock {
+        val index = names.indexOf(name).coerceAtMost(Long.SIZE_BITS - 1)
+        val one = if (type == INT) "1" else "1L"
+        return if (index == 0) CodeBlock.of(one) else CodeBlock.of("$one shl $index")
+    }
+
+    fun bit(name: String) = CodeBlock.of("%M", MemberName(stateType.nestedClass("Companion"), constantName(name)))
+
+    /**
+     * Code that checks if property [name] is changed according to mask [changes]
+     */
+    fun isChanged(name: String, changes: String, oldModel: String, newModel: String): CodeBlock =
+            if (isShared(name))
+                CodeBlock.of("((%L and %L) != %L && %L.$name != %L.$name)", changes, bit(name), zero, oldModel, newModel)
+            else
+                CodeBlock.of("(%L and %L) != %L", changes, bit(name), zero)
+
+    /**
+     * Code that checks if any of properties [names] is changed according to mask [changes]
+     */
+    fun isAnyChanged(names: List<String>, changes: String, oldModel: String, newModel: String): CodeBlock {
+        val (shared, own) = names.partition { isShared(it) }
+        val ownCheck = own.takeIf { it.isNotEmpty() }?.let { isAnyBitSet(it, changes) }
+        return (listOfNotNull(ownCheck) + shared.map { isChanged(it, changes, oldModel, newModel) }).joinToCode(" || ")
+    }
+
+    /**
+     * Code that checks only bits of properties [names]. For shared bit it may be true, even if property is not changed
+     */
+    fun isAnyBitSet(names: List<String>, changes: String) =
+            CodeBlock.of("(%L and (%L)) != %L", changes, names.map { bit(it) }.distinct().joinToCode(" or "), zero)
+
+    val hasSharedBits get() = names.size > Long.SIZE_BITS
+
+    /**
+     * Mask as it is passed to delegate. `Int` mask is widened without sign extension, otherwise bit 31 sets all upper bits
+     */
+    fun asLong(changes: String) = if (type == INT) "($changes.toLong() and 0xFFFFFFFFL)" else changes
+
+    private fun isShared(name: String) = names.size > Long.SIZE_BITS && names.indexOf(name) >= Long.SIZE_BITS - 1
+
+    companion object {
+        const val CHANGES_FUNCTION = "changesFrom"
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.ClassName
+import com.squareup.kotlinpoet.TypeName
+import name.wildswift.android.kannotations.CollectionViewField
+import name.wildswift.android.kannotations.ListImplementation
+import name.wildswift.android.kannotations.ReadWriteMode
+import name.wildswift.android.kannotations.ViewProperty
+
+/**
+ * Values of [CollectionViewField] annotation. Class members set to `Void` are represented as `null`
+ */
+data class CollectionViewFieldData(
+        val name: String,
+        val byDelegate: ClassName?,
+        val byProperty: ViewProperty,
+        val type: TypeName?,
+        val defaultValue: String,
+        val childPropertyName: String,
+        val childPropertySetter: String,
+        val childPropertyListener: String,
+        val childPropertyListenerParams: String,
+        val rwType: ReadWriteMode,
+        val childName: String,
+        val listImplementation: ListImplementation,
+        val viewForElementClass: TypeName,
+        val activeChild: Boolean,
+        val elementEvents: List<ListEventData>,
+        val precomputeTextDistance: Int
+) {
+    companion object {
+        fun from(annotation: AnnotationValues) = CollectionViewFieldData(
+                name = annotation.string("name"),
+                byDelegate = annotation.nonVoidType("byDelegate") as? ClassName,
+                byProperty = annotation.enum("byProperty"),
+                type = annotation.nonVoidType("type"),
+                defaultValue = annotation.string("defaultValue"),
+                childPropertyName = annotation.string("childPropertyName"),
+                childPropertySetter = annotation.string("childPropertySetter"),
+                childPropertyListener = annotation.string("childPropertyListener"),
+                childPropertyListenerParams = annotation.string("childPropertyListenerParams"),
+                rwType = annotation.enum("rwType"),
+                childName = annotation.string("childName"),
+                listImplementation = annotation.enum("listImplementation"),
+                viewForElementClass = annotation.type("viewForElementClass"),
+                activeChild = annotation.boolean("activeChild"),
+                elementEvents = annotation.annotations("elementEvents").map { ListEventData.from(it) },
+                precomputeTextDistance = annotation.int("precomputeTextDistance")
+        )
+    }
+}
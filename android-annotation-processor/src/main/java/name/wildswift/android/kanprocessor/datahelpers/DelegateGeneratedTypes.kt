@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.ClassName
+
+/**
+ * Names of classes generated for single delegate. May be resolved without building full generation data,
+ * so other delegates can reference it through `byDelegate`
+ *
+ * [modelDefaultConstructor] is `true` if model class is generated, so it can be created with default constructor
+ * [precomputesText] is `true` if view has `precomputeText` function, that is called by adapters of lists with `precomputeTextDistance`
+ */
+data class DelegateGeneratedTypes(
+        val delegateType: ClassName,
+        val generateViewType: ClassName,
+        val internalModelType: ClassName,
+        val externalModelType: ClassName,
+        val modelDefaultConstructor: Boolean,
+        val precomputesText: Boolean
+) {
+    companion object {
+        /**
+         * @param viewName view class name from annotation, may be empty if delegate class ends with "Delegate"
+         */
+        fun of(packageName: String, className: String, viewName: String, generateViewDataObject: Boolean, precomputesText: Boolean): DelegateGeneratedTypes {
+            val viewClassName = viewName.takeIf { it.isNotBlank() }
+                    ?: className.let { if (it.endsWith("Delegate")) it.substring(0, it.length - "Delegate".length) else null }
+                    ?: throw IllegalArgumentException("Class name must be specified or delegate must ends with 'Delegate' suffix. Class $packageName.$className")
+
+            return DelegateGeneratedTypes(
+                    delegateType = ClassName(packageName, className),
+                    generateViewType = ClassName(packageName, viewClassName),
+                    internalModelType = ClassName(packageName, "${viewClassName}IntState"),
+                    externalModelType = ClassName(packageName, "${viewClassName}Model"),
+                    modelDefaultConstructor = generateViewDataObject,
+                    precomputesText = precomputesText
+            )
+        }
+    }
+}
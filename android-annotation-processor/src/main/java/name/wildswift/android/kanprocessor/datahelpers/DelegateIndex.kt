@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.ClassName
+
+/**
+ * Index of generated types of delegate, stored as resource `META-INF/wsannotations/delegates/<delegate class>.delegate` in library module.
+ * Annotations of delegates have source retention, so for delegates from other modules generated types are resolved from this index.
+ * The same content is put to [entryType] object, as KSP can't read resources
+ */
+object DelegateIndex {
+    const val PACKAGE = "META-INF.wsannotations.delegates"
+    const val EXTENSION = "delegate"
+
+    fun resourcePath(delegateName: String) = "${PACKAGE.replace('.', '/')}/$delegateName.$EXTENSION"
+
+    /**
+     * Object with [name.wildswift.android.kannotations.DelegateIndexEntry] annotation, that holds the same index for KSP
+     */
+    fun entryType(delegateType: ClassName) = ClassName(delegateType.packageName, "_${delegateType.simpleNames.joinToString("_")}Index")
+
+    fun encode(types: DelegateGeneratedTypes) = listOf(
+            "delegate" to types.delegateType.canonicalName,
+            "view" to types.generateViewType.canonicalName,
+            "internalModel" to types.internalModelType.canonicalName,
+            "model" to types.externalModelType.canonicalName,
+            "modelDefaultConstructor" to types.modelDefaultConstructor.toString(),
+            "precomputesText" to types.precomputesText.toString()
+    ).joinToString("\n", postfix = "\n") { "${it.first}=${it.second}" }
+
+    /**
+     * @return `null` if index content is not complete
+     */
+    fun decode(content: String): DelegateGeneratedTypes? {
+        val values = content.lineSequence()
+                .filter { it.contains('=') }
+                .associate { it.substringBefore('=').trim() to it.substringAfter('=').trim() }
+        return DelegateGeneratedTypes(
+                delegateType = values["delegate"]?.let { ClassName.bestGuess(it) } ?: return null,
+                generateViewType = values["view"]?.let { ClassName.bestGuess(it) } ?: return null,
+                internalModelType = values["internalModel"]?.let { ClassName.bestGuess(it) } ?: return null,
+                externalModelType = values["model"]?.let { ClassName.bestGuess(it) } ?: return null,
+                modelDefaultConstructor = values["modelDefaultConstructor"]?.toBoolean() ?: return null,
+                // Index of older version has no flag
+                precomputesText = values["precomputesText"]?.toBoolean() ?: false
+        )
+    }
+}
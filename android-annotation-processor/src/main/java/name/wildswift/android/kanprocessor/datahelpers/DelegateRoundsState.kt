@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+/**
+ * Keeps state of view delegates processing between rounds.
+ *
+ * Generated types of every seen delegate are accumulated, so delegates from later rounds can reference delegates
+ * from earlier rounds. Per-round [DelegateTypeResolver] is asked only for delegates, that are not seen yet.
+ * Delegates that reference not resolvable delegates are deferred to the next round and reported only when processing is over
+ */
+class DelegateRoundsState {
+    private val knownTypes = mutableMapOf<String, DelegateGeneratedTypes>()
+    private val roundDeferred = mutableMapOf<String, List<String>>()
+
+    fun register(types: DelegateGeneratedTypes) {
+        knownTypes[types.delegateType.canonicalName] = types
+    }
+
+    fun resolverFor(roundResolver: DelegateTypeResolver): DelegateTypeResolver = object : DelegateTypeResolver {
+        override fun get(delegateName: String?): DelegateGeneratedTypes? {
+            if (delegateName == null) return null
+            return knownTypes[delegateName] ?: roundResolver[delegateName]?.also { register(it) }
+        }
+    }
+
+    /**
+     * Defers [data] to the next round if some of referenced delegates can't be resolved by [typeResolver]
+     * @return `true` if [data] may be generated in current round
+     */
+    fun deferIfUnresolved(data: ViewWithDelegateGenerationData, typeResolver: DelegateTypeResolver): Boolean {
+        val unresolved = data.referencedDelegates.distinct().filter { typeResolver[it] == null }
+        if (unresolved.isEmpty()) return true
+        defer(data.delegateType.canonicalName, unresolved.map { "delegate $it" })
+        return false
+    }
+
+    /**
+     * Defers delegate, which generation data can't be read in current round
+     * @param unresolved descriptions of unresolved references for error message
+     */
+    fun defer(delegateName: String, unresolved: List<String>) {
+        roundDeferred[delegateName] = unresolved
+    }
+
+    /**
+     * Starts new round
+     * @return names of delegates deferred in previous round mapped to descriptions of unresolved references
+     */
+    fun nextRound(): Map<String, List<String>> {
+        val deferred = roundDeferred.toMap()
+        roundDeferred.clear()
+        return deferred
+    }
+
+    companion object {
+        fun unresolvedMessage(delegateName: String, unresolved: List<String>) =
+                "Can't resolve ${unresolved.joinToString()} in $delegateName. " +
+                        "Delegates referenced by byDelegate must be annotated with ViewWithDelegate or compiled with delegate index"
+    }
+}
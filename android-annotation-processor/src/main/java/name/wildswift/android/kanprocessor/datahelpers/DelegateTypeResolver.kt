@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+/**
+ * Resolves generated types for `byDelegate` references from annotations of referenced delegate itself.
+ * Only referenced delegates are touched, so processor stays isolating for Gradle incremental compilation
+ */
+interface DelegateTypeResolver {
+    operator fun get(delegateName: String?): DelegateGeneratedTypes?
+
+    /**
+     * Resolves [delegateNames] at once and returns immutable resolver, that may be used outside of processing thread
+     */
+    fun snapshot(delegateNames: Collection<String>): DelegateTypeResolver {
+        val resolved = delegateNames.associateWith { get(it) }
+        return object : DelegateTypeResolver {
+            override fun get(delegateName: String?) = resolved[delegateName]
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.TypeName
+import com.squareup.kotlinpoet.asTypeName
+import name.wildswift.android.kanprocessor.utils.asKotlinTypeName
+import javax.lang.model.element.ExecutableElement
+
+/**
+ * Delegate method, annotated with `Delegated`, that will be exposed by generated view
+ */
+data class DelegatedMethodData(
+        val name: String,
+        val returnType: TypeName,
+        val parameters: List<Pair<String, TypeName>>
+) {
+    companion object {
+        fun from(method: ExecutableElement) = DelegatedMethodData(
+                name = method.simpleName.toString().split("$").firstOrNull().orEmpty(),
+                returnType = method.returnType.asTypeName(),
+                parameters = method.parameters.map { it.simpleName.toString() to it.asType().asKotlinTypeName() }
+        )
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.ClassName
+import com.squareup.kotlinpoet.KModifier
+import com.squareup.kotlinpoet.TypeName
+import name.wildswift.android.kanprocessor.utils.resolveKotlinVisibility
+import javax.annotation.processing.ProcessingEnvironment
+import javax.lang.model.element.Element
+import javax.lang.model.element.ElementKind
+import javax.lang.model.element.TypeElement
+
+/**
+ * Reads annotations through [javax.lang.model.element.AnnotationMirror] for kapt. Created once per round: results of lookups,
+ * that may be requested many times (Kotlin metadata, enum constants, annotations of referenced delegates) are cached
+ */
+class ElementsAnnotationReader(val env: ProcessingEnvironment) {
+    private val annotationsCache = mutableMapOf<Triple<Element, String, String?>, List<AnnotationValues>>()
+    private val visibilityCache = mutableMapOf<TypeElement, KModifier>()
+    private val enumConstantCache = mutableMapOf<String, String?>()
+
+    /**
+     * Annotations of [annotationClass] on [element]. If [containerClass] set, annotations from its `value` member are added before
+     */
+    fun annotations(element: Element, annotationClass: Class<out Annotation>, containerClass: Class<out Annotation>? = null): List<AnnotationValues> =
+            annotationsCache.getOrPut(Triple(element, annotationClass.name, containerClass?.name)) {
+                val contained = containerClass?.let { container -> findMirrors(element, container).flatMap { it.annotations("value") } }.orEmpty()
+                contained + findMirrors(element, annotationClass)
+            }
+
+    fun annotation(element: Element, annotationClass: Class<out Annotation>) = annotations(element, annotationClass).firstOrNull()
+
+    fun visibility(typeElement: TypeElement) = visibilityCache.getOrPut(typeElement) { resolveKotlinVisibility(typeElement) }
+
+    fun firstEnumConstant(type: TypeName?): String? {
+        val className = (type as? ClassName)?.canonicalName ?: return null
+        return enumConstantCache.getOrPut(className) {
+            env.elementUtils.getTypeElement(className)
+                    ?.takeIf { it.kind == ElementKind.ENUM }
+                    ?.enclosedElements
+                    ?.firstOrNull { it.kind == ElementKind.ENUM_CONSTANT }
+                    ?.simpleName
+                    ?.toString()
+        }
+    }
+
+    fun packageOf(element: Element) = env.elementUtils.getPackageOf(element).toString()
+
+    private fun findMirrors(element: Element, annotationClass: Class<out Annotation>) = element.annotationMirrors
+            .filter { (it.annotationType.asElement() as? TypeElement)?.qualifiedName?.contentEquals(annotationClass.canonicalName) == true }
+            .map { AnnotationValues.of(it, env.elementUtils) }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import java.io.IOException
+import javax.tools.StandardLocation
+
+/**
+ * [DelegateTypeResolver] for kapt, looks up referenced delegates through [javax.lang.model.util.Elements].
+ * Delegates compiled in other modules have no source annotations, so they are resolved from [DelegateIndex] on classpath
+ */
+class ElementsDelegateTypeResolver(private val reader: ElementsAnnotationReader) : DelegateTypeResolver {
+    private val cache = mutableMapOf<String, DelegateGeneratedTypes?>()
+
+    override operator fun get(delegateName: String?): DelegateGeneratedTypes? {
+        if (delegateName == null) return null
+        return cache.getOrPut(delegateName) {
+            reader.env.elementUtils.getTypeElement(delegateName)
+                    ?.let { ViewWithDelegateGenerationData.generatedTypesOf(it, reader) }
+                    ?: readIndex(delegateName)
+        }
+    }
+
+    private fun readIndex(delegateName: String) = try {
+        reader.env.filer
+                .getResource(StandardLocation.CLASS_PATH, "", DelegateIndex.resourcePath(delegateName))
+                .getCharContent(true)
+                .toString()
+                .let { DelegateIndex.decode(it) }
+    } catch (e: IOException) {
+        null
+    } catch (e: IllegalArgumentException) {
+        null
+    }
+}
@@ -21,5 +21,5 @@ import com.squareup.kotlinpoet.PropertySpec
 data class FieldMethodsGenerationMetadata(
         val name: String,
         val readWriteProperty: PropertySpec,
-        val listenerProperty: PropertySpec?
+        val listener: ListenerGenerationData?
 )
\ No newline at end of file
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.FunSpec
+import com.squareup.kotlinpoet.PropertySpec
+
+/**
+ * Members of generated view, that postpone update of child views to next frame, if `coalesceFrameUpdates` is set
+ */
+data class FrameRenderGenerationData(
+        val scheduledProperty: PropertySpec,
+        val changesProperty: PropertySpec,
+        val renderedModelProperty: PropertySpec?,
+        val callbackProperty: PropertySpec,
+        val renderFunction: FunSpec
+) {
+    val properties get() = listOfNotNull(scheduledProperty, changesProperty, renderedModelProperty, callbackProperty)
+}
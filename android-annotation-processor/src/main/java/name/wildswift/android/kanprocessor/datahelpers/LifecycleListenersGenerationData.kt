@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.CodeBlock
+import com.squareup.kotlinpoet.FunSpec
+import com.squareup.kotlinpoet.PropertySpec
+
+/**
+ * Members of generated view with `lifecycleAwareListeners` flag. While [activeProperty] is not set, dispatch of listeners only
+ * marks field in [pendingChangesProperty] (or sets [pendingViewModelProperty]), and latest values are delivered when owner is started
+ */
+data class LifecycleListenersGenerationData(
+        val activeProperty: PropertySpec,
+        val pendingChangesProperty: PropertySpec,
+        val pendingViewModelProperty: PropertySpec?,
+        val ownerProperty: PropertySpec,
+        val observerProperty: PropertySpec
+) {
+    val properties get() = listOfNotNull(activeProperty, pendingChangesProperty, pendingViewModelProperty, ownerProperty, observerProperty)
+
+    /**
+     * Code that postpones dispatch of listener while owner is not started. [pendingMark] marks listener as pending
+     */
+    fun deferDispatch(pendingMark: CodeBlock): CodeBlock = CodeBlock.builder()
+            .beginControlFlow("if (!%N)", activeProperty)
+            .addStatement("%L", pendingMark)
+            .addStatement("return")
+            .endControlFlow()
+            .build()
+
+    companion object {
+        const val LIFECYCLE_EVENT_FUNCTION = "onListenersLifecycleEvent"
+    }
+}
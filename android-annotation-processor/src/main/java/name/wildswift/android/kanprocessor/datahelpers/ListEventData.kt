@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import name.wildswift.android.kannotations.ListEvent
+import name.wildswift.android.kannotations.ViewListener
+
+/**
+ * Values of [ListEvent] annotation
+ */
+data class ListEventData(
+        val name: String,
+        val listener: ViewListener,
+        val listenerName: String
+) {
+    companion object {
+        fun from(annotation: AnnotationValues) = ListEventData(
+                name = annotation.string("name"),
+                listener = annotation.enum("listener"),
+                listenerName = annotation.string("listenerName")
+        )
+    }
+}
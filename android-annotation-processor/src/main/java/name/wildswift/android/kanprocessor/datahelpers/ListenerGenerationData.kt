@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.CodeBlock
+import com.squareup.kotlinpoet.FunSpec
+import com.squareup.kotlinpoet.PropertySpec
+
+/**
+ * Listener of generated view. Beside [lambdaProperty], fields of primitive types and view model have [listenerProperty] of listener
+ * interface type, that is called without boxing. Any number of listeners may be subscribed with [addFunction] to [registryProperty],
+ * that is created only on first subscription. All of them are called from [dispatchFunction]
+ */
+data class ListenerGenerationData(
+        val name: String,
+        val lambdaProperty: PropertySpec,
+        val listenerProperty: PropertySpec?,
+        val registryProperty: PropertySpec,
+        val addFunction: FunSpec,
+        val removeFunction: FunSpec,
+        val dispatchFunction: FunSpec
+) {
+    val properties get() = listOfNotNull(lambdaProperty, listenerProperty, registryProperty)
+
+    val functions get() = listOf(addFunction, removeFunction, dispatchFunction)
+
+    /**
+     * Code that notifies listeners with [value]
+     */
+    fun notify(value: CodeBlock): CodeBlock = CodeBlock.of("%N(%L)", dispatchFunction, value)
+}
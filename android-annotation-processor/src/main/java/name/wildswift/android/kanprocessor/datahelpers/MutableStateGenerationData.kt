@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.PropertySpec
+
+/**
+ * Members of generated view with `mutableState` flag. Every property of state is kept in own field of [slots], state object is built
+ * from them only on demand and is cached until [versionProperty] is changed. [deliveredStateProperty] keeps last state passed to
+ * delegate, if delegate observes state
+ */
+data class MutableStateGenerationData(
+        val slots: Map<String, PropertySpec>,
+        val versionProperty: PropertySpec,
+        val snapshotProperty: PropertySpec,
+        val snapshotVersionProperty: PropertySpec,
+        val deliveredStateProperty: PropertySpec?,
+        val validatesInput: Boolean
+) {
+    val properties get() = slots.values + listOfNotNull(versionProperty, snapshotProperty, snapshotVersionProperty, deliveredStateProperty)
+}
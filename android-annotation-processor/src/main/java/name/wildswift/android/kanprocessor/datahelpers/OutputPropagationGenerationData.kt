@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.CodeBlock
+import com.squareup.kotlinpoet.PropertySpec
+
+/**
+ * Members of generated view, that has active children with propagation policy other than `Immediate`. Listeners of such
+ * children only mark field in [pendingProperty], and output is applied later from single [callbackProperty]. Fields with
+ * `Debounce` policy keep time when output must be applied in [timeProperties], fields with `Throttle` keep time of last output.
+ * Fields with `FocusLost` policy are applied by [focusListenerProperty], that is added to view tree while view is attached,
+ * so focus listeners of children are not replaced
+ */
+data class OutputPropagationGenerationData(
+        val pendingProperty: PropertySpec,
+        val timeProperties: Map<String, PropertySpec>,
+        val callbackProperty: PropertySpec,
+        val focusListenerProperty: PropertySpec?
+) {
+    val properties get() = listOf(pendingProperty) + timeProperties.values + listOfNotNull(callbackProperty, focusListenerProperty)
+
+    companion object {
+        const val SCHEDULE_FUNCTION = "scheduleOutput"
+        const val PROPAGATE_FUNCTION = "propagateOutput"
+        const val FLUSH_FUNCTION = "flushOutput"
+    }
+}
+
+/**
+ * Output of active child, that is applied by flush function. [readChild] declares the same values, that listener of child gets,
+ * so [applyOutput] is the code of immediate listener
+ */
+data class DeferredOutputData(
+        val field: ViewFieldData,
+        val readChild: CodeBlock,
+        val applyOutput: CodeBlock
+)
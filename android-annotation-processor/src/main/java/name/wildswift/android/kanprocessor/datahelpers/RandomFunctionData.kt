@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.TypeName
+import name.wildswift.android.kannotations.RandomFunction
+import name.wildswift.android.kannotations.RandomFunctionParameter
+import name.wildswift.android.kannotations.RandomFunctionType
+
+/**
+ * Values of [RandomFunction] annotation
+ */
+data class RandomFunctionData(
+        val prefix: String,
+        val count: Int,
+        val type: RandomFunctionType,
+        val parameters: List<Parameter>,
+        val dictionary: List<String>
+) {
+    /**
+     * Values of [RandomFunctionParameter] annotation
+     */
+    data class Parameter(
+            val name: String,
+            val type: TypeName,
+            val nullable: Boolean
+    )
+
+    companion object {
+        fun from(annotation: AnnotationValues) = RandomFunctionData(
+                prefix = annotation.string("perfix"),
+                count = annotation.int("count"),
+                type = annotation.enum("type"),
+                parameters = annotation.annotations("parameters").map { Parameter(it.string("name"), it.type("type"), it.boolean("nullable")) },
+                dictionary = annotation.strings("dictionary")
+        )
+    }
+}
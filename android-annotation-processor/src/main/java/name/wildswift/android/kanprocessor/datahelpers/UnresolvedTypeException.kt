@@ -0,0 +1,23 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+/**
+ * Thrown when class member of annotation references type, that does not exist yet.
+ * Type may be generated by another processor, so delegate is deferred to the next round instead of failing build
+ */
+class UnresolvedTypeException(val memberName: String) : IllegalStateException("Type of annotation member \"$memberName\" can't be resolved")
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.ClassName
+import com.squareup.kotlinpoet.TypeName
+import name.wildswift.android.kannotations.OutputPropagation
+import name.wildswift.android.kannotations.ReadWriteMode
+import name.wildswift.android.kannotations.ViewField
+import name.wildswift.android.kannotations.ViewProperty
+
+/**
+ * Values of [ViewField] annotation. Class members set to `Void` are represented as `null`
+ *
+ * [firstEnumConstant] is name of first constant of [type], if it is enum. Used as default value
+ */
+data class ViewFieldData(
+        val name: String,
+        val byDelegate: ClassName?,
+        val byProperty: ViewProperty,
+        val type: TypeName?,
+        val defaultValue: String,
+        val childPropertyName: String,
+        val childPropertySetter: String,
+        val childPropertyListener: String,
+        val childPropertyListenerParams: String,
+        val rwType: ReadWriteMode,
+        val childName: String,
+        val activeChild: Boolean,
+        val propagation: OutputPropagation,
+        val propagationDelay: Int,
+        val minimalTextEdit: Boolean,
+        val precomputeText: Boolean,
+        val asyncDrawable: Boolean,
+        val gatedBy: String,
+        val firstEnumConstant: String?
+) {
+    companion object {
+        fun from(annotation: AnnotationValues, reader: ElementsAnnotationReader): ViewFieldData {
+            val type = annotation.nonVoidType("type")
+            return ViewFieldData(
+                    name = annotation.string("name"),
+                    byDelegate = annotation.nonVoidType("byDelegate") as? ClassName,
+                    byProperty = annotation.enum("byProperty"),
+                    type = type,
+                    defaultValue = annotation.string("defaultValue"),
+                    childPropertyName = annotation.string("childPropertyName"),
+                    childPropertySetter = annotation.string("childPropertySetter"),
+                    childPropertyListener = annotation.string("childPropertyListener"),
+                    childPropertyListenerParams = annotation.string("childPropertyListenerParams"),
+                    rwType = annotation.enum("rwType"),
+                    childName = annotation.string("childName"),
+                    activeChild = annotation.boolean("activeChild"),
+                    propagation = annotation.enum("propagation"),
+                    propagationDelay = annotation.int("propagationDelay"),
+                    minimalTextEdit = annotation.boolean("minimalTextEdit"),
+                    precomputeText = annotation.boolean("precomputeText"),
+                    asyncDrawable = annotation.boolean("asyncDrawable"),
+                    gatedBy = annotation.string("gatedBy"),
+                    firstEnumConstant = reader.firstEnumConstant(type)
+            )
+        }
+    }
+}
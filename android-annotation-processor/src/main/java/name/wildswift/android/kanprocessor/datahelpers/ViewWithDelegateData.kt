@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.TypeName
+import name.wildswift.android.kannotations.ViewWithDelegate
+
+/**
+ * Values of [ViewWithDelegate] annotation, independent from annotation processing frontend (kapt or KSP)
+ */
+data class ViewWithDelegateData(
+        val name: String,
+        val parent: TypeName,
+        val haveChild: Boolean,
+        val layoutResourceName: String,
+        val saveInstanceState: Boolean,
+        val generateViewDataObject: Boolean,
+        val coalesceFrameUpdates: Boolean,
+        val mutableState: Boolean,
+        val lifecycleAwareListeners: Boolean
+) {
+    companion object {
+        fun from(annotation: AnnotationValues) = ViewWithDelegateData(
+                name = annotation.string("name"),
+                parent = annotation.type("parent"),
+                haveChild = annotation.boolean("haveChild"),
+                layoutResourceName = annotation.string("layoutResourceName"),
+                saveInstanceState = annotation.boolean("saveInstanceState"),
+                generateViewDataObject = annotation.boolean("generateViewDataObject"),
+                coalesceFrameUpdates = annotation.boolean("coalesceFrameUpdates"),
+                mutableState = annotation.boolean("mutableState"),
+                lifecycleAwareListeners = annotation.boolean("lifecycleAwareListeners")
+        )
+    }
+}
@@ -19,78 +19,142 @@ package name.wildswift.android.kanprocessor.datahelpers
 import com.squareup.kotlinpoet.ClassName
 import com.squareup.kotlinpoet.KModifier
 import name.wildswift.android.kannotations.*
-import name.wildswift.android.kanprocessor.utils.resolveKotlinVisibility
+import name.wildswift.android.kannotations.interfaces.ViewDelegate
 import name.wildswift.android.kanprocessor.utils.toViewResourceName
 import name.wildswift.android.kanprocessor.utils.validateCorrectSetup
-import javax.annotation.processing.ProcessingEnvironment
+import javax.lang.model.element.Element
 import javax.lang.model.element.ExecutableElement
 import javax.lang.model.element.TypeElement
+import javax.lang.model.util.ElementFilter
 
+/**
+ * [wrapAdapterMapping] maps collection field name to name of delegate method that wraps adapter
+ * [overriddenStateCallbacks] contains names of [STATE_CALLBACKS], that are overridden by delegate or by any of its superclasses
+ * [originatingElement] is delegate element for kapt, and `null` for frontends that track sources by itself (KSP)
+ */
 data class ViewWithDelegateGenerationData(
-        val rootAnnotation: ViewWithDelegate,
-        val attrs: List<ViewAttribute>,
-        val events: List<ViewEvent>,
-        val basicFields: List<ViewField>,
-        val collectionFields: List<CollectionViewField>,
-        val delegatedMethods: List<ExecutableElement>,
+        val rootAnnotation: ViewWithDelegateData,
+        val attrs: List<ViewAttributeData>,
+        val events: List<ViewEventData>,
+        val basicFields: List<ViewFieldData>,
+        val collectionFields: List<CollectionViewFieldData>,
+        val delegatedMethods: List<DelegatedMethodData>,
         val visibilityModifier: KModifier,
         val delegateType: ClassName,
         val generateViewType: ClassName,
         val internalModelType: ClassName,
         val externalModelType: ClassName,
         val layoutName: String,
-        val wrapAdapterMapping: List<Pair<WrapAdapter, ExecutableElement>>
+        val wrapAdapterMapping: List<Pair<String, String>>,
+        val overriddenStateCallbacks: Set<String>,
+        val originatingElement: Element?
 ) {
+    /**
+     * Names of delegates referenced by `byDelegate` of fields
+     */
+    val referencedDelegates: List<String>
+        get() = basicFields.mapNotNull { it.byDelegate?.canonicalName } + collectionFields.mapNotNull { it.byDelegate?.canonicalName }
+
+    val generatedTypes: DelegateGeneratedTypes
+        get() = DelegateGeneratedTypes(delegateType, generateViewType, internalModelType, externalModelType, rootAnnotation.generateViewDataObject, basicFields.any { it.precomputeText })
+
     companion object {
-        fun from(typeElement: TypeElement, env: ProcessingEnvironment): ViewWithDelegateGenerationData {
-            val className = typeElement.simpleName.toString()
-            val packageName = env.elementUtils.getPackageOf(typeElement).toString()
-            val metadata = typeElement.getAnnotation(ViewWithDelegate::class.java)
-            val attrs = typeElement.getAnnotationsByType(Attributes::class.java).flatMap { it.value.asIterable() } + typeElement.getAnnotationsByType(ViewAttribute::class.java)
-            val events = typeElement.getAnnotationsByType(Events::class.java).flatMap { it.value.asIterable() } + typeElement.getAnnotationsByType(ViewEvent::class.java)
-            val fields = typeElement.getAnnotationsByType(Fields::class.java).flatMap { it.value.asIterable() } + typeElement.getAnnotationsByType(ViewField::class.java)
-            val listFields = typeElement.getAnnotationsByType(CollectionsFields::class.java).flatMap { it.value.asIterable() } + typeElement.getAnnotationsByType(CollectionViewField::class.java)
-            val visibilityModifier = resolveKotlinVisibility(typeElement)
-            val delegatedMethods = typeElement.enclosedElements.filter { it.getAnnotation(Delegated::class.java) != null }.filterIsInstance<ExecutableElement>()
-            val wrapAdapterMapping = typeElement.enclosedElements.filterIsInstance<ExecutableElement>().mapNotNull {
-                val annotation = it.getAnnotation(WrapAdapter::class.java)
+        const val VALIDATE_INPUT_CALLBACK = "validateStateForNewInput"
+        const val NEW_STATE_CALLBACK = "onNewInternalState"
+
+        /**
+         * Methods of delegate, that receive state object. Delegate with `mutableState` flag gets state object only if it overrides them
+         */
+        val STATE_CALLBACKS = setOf(VALIDATE_INPUT_CALLBACK, NEW_STATE_CALLBACK)
+
+        fun from(typeElement: TypeElement, reader: ElementsAnnotationReader): ViewWithDelegateGenerationData {
+            val attrs = reader.annotations(typeElement, ViewAttribute::class.java, Attributes::class.java)
+            val events = reader.annotations(typeElement, ViewEvent::class.java, Events::class.java)
+            val fields = reader.annotations(typeElement, ViewField::class.java, Fields::class.java)
+            val listFields = reader.annotations(typeElement, CollectionViewField::class.java, CollectionsFields::class.java)
+            val methods = typeElement.enclosedElements.filterIsInstance<ExecutableElement>()
+            val delegatedMethods = methods.filter { reader.annotation(it, Delegated::class.java) != null }
+            val wrapAdapterMapping = methods.mapNotNull {
+                val annotation = reader.annotation(it, WrapAdapter::class.java)
                 if (annotation != null)
-                    annotation to it
+                    annotation.string("value") to it.simpleName.toString()
                 else
                     null
             }
 
-            val viewClassName = metadata.name.takeIf { it.isNotBlank() }
-                    ?: className.let { if (it.endsWith("Delegate")) it.substring(0, it.length - "Delegate".length) else null }
-                    ?: throw IllegalArgumentException("Class name must be specified or delegate must ends with 'Delegate' suffix. Class $packageName.$className")
+            return create(
+                    packageName = reader.packageOf(typeElement),
+                    className = typeElement.simpleName.toString(),
+                    rootAnnotation = ViewWithDelegateData.from(reader.annotation(typeElement, ViewWithDelegate::class.java)!!),
+                    attrs = attrs.map { ViewAttributeData.from(it) },
+                    events = events.map { ViewEventData.from(it) },
+                    fields = fields.map { ViewFieldData.from(it, reader) },
+                    listFields = listFields.map { CollectionViewFieldData.from(it) },
+                    delegatedMethods = delegatedMethods.map { DelegatedMethodData.from(it) },
+                    visibilityModifier = reader.visibility(typeElement),
+                    wrapAdapterMapping = wrapAdapterMapping,
+                    overriddenStateCallbacks = ElementFilter.methodsIn(reader.env.elementUtils.getAllMembers(typeElement))
+                            .filter { (it.enclosingElement as? TypeElement)?.qualifiedName?.toString() != ViewDelegate::class.java.name }
+                            .map { it.simpleName.toString() }
+                            .filter { it in STATE_CALLBACKS }
+                            .toSet(),
+                    originatingElement = typeElement
+            )
+        }
+
+        fun create(
+                packageName: String,
+                className: String,
+                rootAnnotation: ViewWithDelegateData,
+                attrs: List<ViewAttributeData>,
+                events: List<ViewEventData>,
+                fields: List<ViewFieldData>,
+                listFields: List<CollectionViewFieldData>,
+                delegatedMethods: List<DelegatedMethodData>,
+                visibilityModifier: KModifier,
+                wrapAdapterMapping: List<Pair<String, String>>,
+                overriddenStateCallbacks: Set<String>,
+                originatingElement: Element?
+        ): ViewWithDelegateGenerationData {
+            val generatedTypes = DelegateGeneratedTypes.of(packageName, className, rootAnnotation.name, rootAnnotation.generateViewDataObject, fields.any { it.precomputeText })
 
-            val layoutName = if (metadata.haveChild) metadata.layoutResourceName.takeIf { it.isNotEmpty() }
-                    ?: viewClassName.toViewResourceName() else ""
+            val layoutName = if (rootAnnotation.haveChild) rootAnnotation.layoutResourceName.takeIf { it.isNotEmpty() }
+                    ?: generatedTypes.generateViewType.simpleName.toViewResourceName() else ""
 
-            if (fields.any { !it.validateCorrectSetup(env.elementUtils) }) throw IllegalArgumentException("Fields not configured properly for class $packageName.$className")
+            if (fields.any { !it.validateCorrectSetup() }) throw IllegalArgumentException("Fields not configured properly for class $packageName.$className")
             if (events.any { !it.validateCorrectSetup() }) throw IllegalArgumentException("Events not configured properly for class $packageName.$className")
             if (listFields.any { !it.validateCorrectSetup() }) throw IllegalArgumentException("List fields not configured properly for class $packageName.$className")
 
-            val delegateType = ClassName(packageName, className)
-            val generateViewType = ClassName(packageName, viewClassName)
-            val internalModelType = ClassName(packageName, "${viewClassName}IntState")
-            val externalModelType = ClassName(packageName, "${viewClassName}Model")
-
             return ViewWithDelegateGenerationData(
-                    rootAnnotation = metadata,
+                    rootAnnotation = rootAnnotation,
                     attrs = attrs,
                     events = events,
                     basicFields = fields,
                     collectionFields = listFields,
                     delegatedMethods = delegatedMethods,
                     visibilityModifier = visibilityModifier,
-                    delegateType = delegateType,
-                    generateViewType = generateViewType,
-                    internalModelType = internalModelType,
-                    externalModelType = externalModelType,
+                    delegateType = generatedTypes.delegateType,
+                    generateViewType = generatedTypes.generateViewType,
+                    internalModelType = generatedTypes.internalModelType,
+                    externalModelType = generatedTypes.externalModelType,
                     layoutName = layoutName,
-                    wrapAdapterMapping = wrapAdapterMapping
+                    wrapAdapterMapping = wrapAdapterMapping,
+                    overriddenStateCallbacks = overriddenStateCallbacks,
+                    originatingElement = originatingElement
+            )
+        }
+
+        /**
+         * @return `null` if [typeElement] is not annotated with [ViewWithDelegate]
+         */
+        fun generatedTypesOf(typeElement: TypeElement, reader: ElementsAnnotationReader) = reader.annotation(typeElement, ViewWithDelegate::class.java)?.let {
+            DelegateGeneratedTypes.of(
+                    packageName = reader.packageOf(typeElement),
+                    className = typeElement.simpleName.toString(),
+                    viewName = it.string("name"),
+                    generateViewDataObject = it.boolean("generateViewDataObject"),
+                    precomputesText = reader.annotations(typeElement, ViewField::class.java, Fields::class.java).any { field -> field.boolean("precomputeText") }
             )
         }
     }
-}
\ No newline at end of file
+}
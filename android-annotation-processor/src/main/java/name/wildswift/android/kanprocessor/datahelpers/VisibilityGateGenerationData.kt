@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.datahelpers
+
+import com.squareup.kotlinpoet.PropertySpec
+
+/**
+ * Changes of fields with `gatedBy`, that are not applied to children while gate visibility field is `GONE`. [gates] maps name of
+ * gate field to names of fields gated by it
+ */
+data class VisibilityGateGenerationData(
+        val pendingChangesProperty: PropertySpec,
+        val gates: Map<String, List<String>>
+) {
+    val gatedFields get() = gates.values.flatten()
+}
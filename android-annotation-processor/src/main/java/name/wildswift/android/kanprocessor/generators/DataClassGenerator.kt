@@ -17,14 +17,21 @@
 package name.wildswift.android.kanprocessor.generators
 
 import com.squareup.kotlinpoet.*
+import name.wildswift.android.kanprocessor.datahelpers.ChangeMask
 import name.wildswift.android.kanprocessor.datahelpers.PropertyData
-import java.io.File
+import javax.lang.model.element.Element
 
 object DataClassGenerator {
-    fun generateDataClass(classType: ClassName, inputProperties: List<PropertyData>, generationPath: File): TypeSpec? {
+    const val CHANGES_CLASS = "Changes"
+
+    /**
+     * If [changeMask] is set, class also gets bit constants of properties and function that computes mask of changes
+     */
+    fun generateDataClass(classType: ClassName, inputProperties: List<PropertyData>, originatingElement: Element?, changeMask: ChangeMask? = null): TypeSpec? {
         if (inputProperties.isEmpty()) return null
         val classSpec = TypeSpec
                 .classBuilder(classType)
+                .apply { if (originatingElement != null) addOriginatingElement(originatingElement) }
                 .addModifiers(KModifier.DATA)
                 .primaryConstructor(
                         FunSpec.constructorBuilder()
@@ -44,14 +51,50 @@ object DataClassGenerator {
                     inputProperties.forEach { builder.addProperty(PropertySpec.builder(it.name, it.type).initializer(it.name).build()) }
                     builder
                 }
+                .apply {
+                    if (changeMask != null) {
+                        addFunction(buildChangesFunction(classType, inputProperties, changeMask))
+                        addType(buildChangesClass(inputProperties, changeMask))
+                        addType(TypeSpec.companionObjectBuilder()
+                                .addProperties(inputProperties.map {
+                                    PropertySpec.builder(changeMask.constantName(it.name), changeMask.type, KModifier.CONST).initializer(changeMask.constantValue(it.name)).build()
+                                })
+                                .build())
+                    }
+                }
                 .build()
 
-        FileSpec
-                .builder(classType.packageName, classType.simpleNames.first())
-                .addType(classSpec)
-                .build()
-                .writeTo(generationPath)
         return classSpec
     }
 
-}
\ No newline at end of file
+    /**
+     * Typed view of mask, that delegate gets in `onNewInternalState`. Properties with shared bit are reported as changed,
+     * if any of them is changed
+     */
+    private fun buildChangesClass(inputProperties: List<PropertyData>, changeMask: ChangeMask): TypeSpec {
+        return TypeSpec.classBuilder(CHANGES_CLASS)
+                .primaryConstructor(FunSpec.constructorBuilder().addParameter("mask", LONG).build())
+                .addProperty(PropertySpec.builder("mask", LONG).initializer("mask").build())
+                .addProperties(inputProperties.map {
+                    PropertySpec.builder("is${it.name.capitalize()}Changed", BOOLEAN)
+                            .getter(FunSpec.getterBuilder().addStatement("return (mask and %L) != 0L", changeMask.asLong(changeMask.constantName(it.name))).build())
+                            .build()
+                })
+                .build()
+    }
+
+    private fun buildChangesFunction(classType: ClassName, inputProperties: List<PropertyData>, changeMask: ChangeMask): FunSpec {
+        return FunSpec.builder(ChangeMask.CHANGES_FUNCTION)
+                .addParameter("oldState", classType)
+                .returns(changeMask.type)
+                .addStatement("if (this === oldState) return ${changeMask.zero}")
+                .addStatement("var changes = ${changeMask.zero}")
+                .apply {
+                    inputProperties.forEach {
+                        addStatement("if (${it.name} != oldState.${it.name}) changes = changes or ${changeMask.constantName(it.name)}")
+                    }
+                }
+                .addStatement("return changes")
+                .build()
+    }
+}
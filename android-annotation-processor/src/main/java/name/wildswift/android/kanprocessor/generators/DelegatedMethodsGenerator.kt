@@ -16,24 +16,22 @@
 
 package name.wildswift.android.kanprocessor.generators
 
-import com.squareup.kotlinpoet.ClassName
 import com.squareup.kotlinpoet.FunSpec
 import com.squareup.kotlinpoet.PropertySpec
-import com.squareup.kotlinpoet.asTypeName
-import javax.lang.model.element.ExecutableElement
+import name.wildswift.android.kanprocessor.datahelpers.DelegatedMethodData
 
 object DelegatedMethodsGenerator {
-    fun buildDelegatedMethods(delegatedMethods: List<ExecutableElement>, delegateProperty: PropertySpec): List<FunSpec> {
+    fun buildDelegatedMethods(delegatedMethods: List<DelegatedMethodData>, delegateProperty: PropertySpec): List<FunSpec> {
         return delegatedMethods
                 .map { method ->
-                    val name = method.simpleName.toString().split("$").firstOrNull().orEmpty()
+                    val name = method.name
                     val funBuilder = FunSpec.builder(name)
-                            .returns(method.returnType.asTypeName())
+                            .returns(method.returnType)
                             .addCode("""
-                            |    return %N.$name(${method.parameters.joinToString { it.simpleName.toString() }})
+                            |    return %N.$name(${method.parameters.joinToString { it.first }})
                             |
                         """.trimMargin(), delegateProperty)
-                    method.parameters.forEach { funBuilder.addParameter(it.simpleName.toString(), it.asType().asTypeName().let { if (it.toString() == "java.lang.String") ClassName("kotlin", "String") else it }) }
+                    method.parameters.forEach { (parameterName, parameterType) -> funBuilder.addParameter(parameterName, parameterType) }
                     funBuilder.build()
                 }
     }
@@ -18,25 +18,26 @@ package name.wildswift.android.kanprocessor.generators
 
 import com.squareup.kotlinpoet.*
 import com.squareup.kotlinpoet.ParameterizedTypeName.Companion.parameterizedBy
-import name.wildswift.android.kannotations.CollectionViewField
-import name.wildswift.android.kanprocessor.datahelpers.ViewWithDelegateGenerationData
+import name.wildswift.android.kanprocessor.datahelpers.CollectionViewFieldData
+import name.wildswift.android.kanprocessor.datahelpers.DelegateTypeResolver
 import name.wildswift.android.kanprocessor.utils.*
 import java.lang.ref.WeakReference
 
 object ListAdapterGenerator {
-    fun buildOldAdapterClass(collectionField: CollectionViewField, processingTypeMap: Map<String, ViewWithDelegateGenerationData>): TypeSpec {
+    fun buildOldAdapterClass(collectionField: CollectionViewFieldData, typeResolver: DelegateTypeResolver): TypeSpec {
+        collectionField.validatePrecomputeText(typeResolver)
         return TypeSpec
                 .classBuilder(collectionField.name.capitalize() + "Adapter")
                 .addModifiers(KModifier.PRIVATE, KModifier.INNER)
                 .primaryConstructor(
                         FunSpec.constructorBuilder()
                                 .addParameter(ParameterSpec.builder("context", contextClass).build())
-                                .addParameter(ParameterSpec.builder("values", itemsDSClass.parameterizedBy(collectionField.getModelType(processingTypeMap))).build())
+                                .addParameter(ParameterSpec.builder("values", itemsDSClass.parameterizedBy(collectionField.getModelType(typeResolver))).build())
                                 .build()
                 )
                 .addProperty(PropertySpec.builder("context", contextClass, KModifier.PRIVATE).initializer("context").build())
-                .addProperty(PropertySpec.builder("values", itemsDSClass.parameterizedBy(collectionField.getModelType(processingTypeMap)), KModifier.PRIVATE).initializer("values").build())
-                .addProperty(PropertySpec.builder("createdViews", LIST.parameterizedBy(WeakReference::class.asTypeName().parameterizedBy(collectionField.getAdapterViewType(processingTypeMap))), KModifier.PRIVATE).initializer("listOf()").mutable().build())
+                .addProperty(PropertySpec.builder("values", itemsDSClass.parameterizedBy(collectionField.getModelType(typeResolver)), KModifier.PRIVATE).initializer("values").build())
+                .addProperty(PropertySpec.builder("createdViews", LIST.parameterizedBy(WeakReference::class.asTypeName().parameterizedBy(collectionField.getAdapterViewType(typeResolver))), KModifier.PRIVATE).initializer("listOf()").mutable().build())
                 .superclass(baseAdapterClass)
                 .addSuperinterface(itemsObserverClass)
                 .addFunction(
@@ -46,9 +47,10 @@ object ListAdapterGenerator {
                                 .addParameter(ParameterSpec.builder("reuse", viewClass.copy(nullable = true)).build())
                                 .addParameter(ParameterSpec.builder("parent", viewGroupClass).build())
                                 .returns(viewClass)
-                                .addStatement("val view = reuse as? %1T ?:·%1T(context).apply·{·createdViews·=·createdViews.filter·{·it.get()·!=·null·}·+·%2T(this)·}", collectionField.getAdapterViewType(processingTypeMap), WeakReference::class.asTypeName())
-                                .addStatement("view.${collectionField.buildSetViewModelStatement(processingTypeMap, "values[index]")}")
+                                .addStatement("val view = reuse as? %1T ?:·%1T(context).apply·{·createdViews·=·createdViews.filter·{·it.get()·!=·null·}·+·%2T(this)·}", collectionField.getAdapterViewType(typeResolver), WeakReference::class.asTypeName())
+                                .addStatement("view.${collectionField.buildSetViewModelStatement(typeResolver, "values[index]")}")
                                 .addStatement("view.tag = index")
+                                .also { collectionField.addPrecomputeText(it, "view.", "index") }
                                 .also { builder ->
                                     collectionField.elementEvents
                                             .map { CodeBlock.of("view.${it.resolveListener("${it.name}?.invoke(values[view.tag as? Int ?: 0])")}") }
@@ -108,7 +110,7 @@ object ListAdapterGenerator {
                                 .addModifiers(KModifier.OVERRIDE)
                                 .addParameter(ParameterSpec.builder("index", INT).build())
                                 .addStatement("createdViews.filter·{·it.get()?.tag·==·index·}.forEach·{")
-                                .addStatement("⇥it.get()?.${collectionField.buildSetViewModelStatement(processingTypeMap, "values[index]")}")
+                                .addStatement("⇥it.get()?.${collectionField.buildSetViewModelStatement(typeResolver, "values[index]")}")
                                 .addStatement("⇤}")
                                 .build()
                 )
@@ -128,7 +130,8 @@ object ListAdapterGenerator {
                 .build()
     }
 
-    fun buildRecyclerAdapterClass(collectionField: CollectionViewField, processingTypeMap: Map<String, ViewWithDelegateGenerationData>): TypeSpec {
+    fun buildRecyclerAdapterClass(collectionField: CollectionViewFieldData, typeResolver: DelegateTypeResolver): TypeSpec {
+        collectionField.validatePrecomputeText(typeResolver)
         return TypeSpec
                 .classBuilder(collectionField.name.capitalize() + "Adapter")
                 .addModifiers(KModifier.PRIVATE, KModifier.INNER)
@@ -137,12 +140,12 @@ object ListAdapterGenerator {
                 .primaryConstructor(
                         FunSpec.constructorBuilder()
                                 .addParameter(ParameterSpec.builder("context", contextClass).build())
-                                .addParameter(ParameterSpec.builder("values", itemsDSClass.parameterizedBy(collectionField.getModelType(processingTypeMap))).build())
+                                .addParameter(ParameterSpec.builder("values", itemsDSClass.parameterizedBy(collectionField.getModelType(typeResolver))).build())
                                 .build()
                 )
                 .addProperty(PropertySpec.builder("context", contextClass, KModifier.PRIVATE).initializer("context").build())
-                .addProperty(PropertySpec.builder("values", itemsDSClass.parameterizedBy(collectionField.getModelType(processingTypeMap)), KModifier.PRIVATE).initializer("values").build())
-                .addProperty(PropertySpec.builder("createdViews", LIST.parameterizedBy(WeakReference::class.asTypeName().parameterizedBy(collectionField.getAdapterViewType(processingTypeMap))), KModifier.PRIVATE).initializer("listOf()").mutable().build())
+                .addProperty(PropertySpec.builder("values", itemsDSClass.parameterizedBy(collectionField.getModelType(typeResolver)), KModifier.PRIVATE).initializer("values").build())
+                .addProperty(PropertySpec.builder("createdViews", LIST.parameterizedBy(WeakReference::class.asTypeName().parameterizedBy(collectionField.getAdapterViewType(typeResolver))), KModifier.PRIVATE).initializer("listOf()").mutable().build())
                 .addFunction(
                         FunSpec.builder("onCreateViewHolder")
                                 .addModifiers(KModifier.OVERRIDE)
@@ -150,7 +153,7 @@ object ListAdapterGenerator {
                                 .addParameter(ParameterSpec.builder("viewType", INT).build())
                                 .returns(recyclerHolderClass)
                                 .addCode(CodeBlock.builder()
-                                        .add("return object : %T(%T(context)\n", recyclerHolderClass, collectionField.getAdapterViewType(processingTypeMap))
+                                        .add("return object : %T(%T(context)\n", recyclerHolderClass, collectionField.getAdapterViewType(typeResolver))
                                         .beginControlFlow(".also { view ->")
                                         .addStatement("createdViews = createdViews.filter { it.get() != null } + %T(view)", WeakReference::class.asTypeName())
                                         .also { builder ->
@@ -168,9 +171,10 @@ object ListAdapterGenerator {
                                 .addModifiers(KModifier.OVERRIDE)
                                 .addParameter(ParameterSpec.builder("holder", recyclerHolderClass).build())
                                 .addParameter(ParameterSpec.builder("position", INT).build())
-                                .beginControlFlow("(holder.itemView as %T).apply", collectionField.getAdapterViewType(processingTypeMap))
+                                .beginControlFlow("(holder.itemView as %T).apply", collectionField.getAdapterViewType(typeResolver))
                                 .addStatement("tag = position")
-                                .addStatement(collectionField.buildSetViewModelStatement(processingTypeMap, "values[position]"))
+                                .addStatement(collectionField.buildSetViewModelStatement(typeResolver, "values[position]"))
+                                .also { collectionField.addPrecomputeText(it, "", "position") }
                                 .endControlFlow()
                                 .build()
                 )
@@ -214,7 +218,7 @@ object ListAdapterGenerator {
                                 .addModifiers(KModifier.OVERRIDE)
                                 .addParameter(ParameterSpec.builder("index", INT).build())
                                 .addStatement("createdViews.filter·{·it.get()?.tag·==·index·}.forEach·{")
-                                .addStatement("⇥it.get()?.${collectionField.buildSetViewModelStatement(processingTypeMap, "values[index]")}")
+                                .addStatement("⇥it.get()?.${collectionField.buildSetViewModelStatement(typeResolver, "values[index]")}")
                                 .addStatement("⇤}")
                                 .build()
                 )
@@ -240,4 +244,13 @@ object ListAdapterGenerator {
                                 .build()
                 ).build()
     }
-}
\ No newline at end of file
+
+    /**
+     * Text of elements, that will be bound soon in any direction of scroll, is measured while current element is bound
+     */
+    private fun CollectionViewFieldData.addPrecomputeText(builder: FunSpec.Builder, receiver: String, position: String) {
+        if (precomputeTextDistance <= 0) return
+        builder.addStatement("if ($position + $precomputeTextDistance < values.size) ${receiver}precomputeText(values[$position + $precomputeTextDistance])")
+        builder.addStatement("if ($position >= $precomputeTextDistance) ${receiver}precomputeText(values[$position - $precomputeTextDistance])")
+    }
+}
@@ -18,136 +18,657 @@ package name.wildswift.android.kanprocessor.generators
 
 import com.squareup.kotlinpoet.*
 import com.squareup.kotlinpoet.ParameterizedTypeName.Companion.parameterizedBy
-import name.wildswift.android.kannotations.ViewField
+import name.wildswift.android.kannotations.ViewProperty
+import name.wildswift.android.kanprocessor.datahelpers.BatchGenerationData
+import name.wildswift.android.kanprocessor.datahelpers.ChangeMask
+import name.wildswift.android.kanprocessor.datahelpers.DelegateTypeResolver
 import name.wildswift.android.kanprocessor.datahelpers.FieldMethodsGenerationMetadata
+import name.wildswift.android.kanprocessor.datahelpers.FrameRenderGenerationData
+import name.wildswift.android.kanprocessor.datahelpers.LifecycleListenersGenerationData
 import name.wildswift.android.kanprocessor.datahelpers.ListFieldGenerationData
+import name.wildswift.android.kanprocessor.datahelpers.ListenerGenerationData
+import name.wildswift.android.kanprocessor.datahelpers.MutableStateGenerationData
+import name.wildswift.android.kanprocessor.datahelpers.PropertyData
+import name.wildswift.android.kanprocessor.datahelpers.ViewFieldData
+import name.wildswift.android.kanprocessor.datahelpers.ViewModelSnapshotGenerationData
 import name.wildswift.android.kanprocessor.datahelpers.ViewWithDelegateGenerationData
+import name.wildswift.android.kanprocessor.datahelpers.VisibilityGateGenerationData
 import name.wildswift.android.kanprocessor.utils.*
-import kotlin.properties.Delegates
 
 object ModelPropertyGenerator {
-    fun internalModelProperty(data: ViewWithDelegateGenerationData, delegateProperty: PropertySpec, listFieldsGenerationData: List<ListFieldGenerationData>, childrenUpdateProperty: PropertySpec): PropertySpec {
+    private const val GATED_CHANGES = "gatedApplyChanges"
+
+    /**
+     * With [mutableState] internal model is built from slots on demand and cached while version of state is not changed
+     */
+    fun internalModelProperty(data: ViewWithDelegateGenerationData, mutableState: MutableStateGenerationData?): PropertySpec {
+        if (mutableState == null) {
+            return PropertySpec.builder("intModel", data.internalModelType)
+                    .mutable()
+                    .addModifiers(KModifier.PRIVATE)
+                    .initializer("%T()", data.internalModelType)
+                    .build()
+        }
         return PropertySpec.builder("intModel", data.internalModelType)
+                .addModifiers(KModifier.PRIVATE)
+                .getter(FunSpec.getterBuilder()
+                        .addStatement("val snapshot = %N", mutableState.snapshotProperty)
+                        .addStatement("if (snapshot != null && %N == %N) return snapshot", mutableState.snapshotVersionProperty, mutableState.versionProperty)
+                        .addStatement("val newSnapshot = %T(\n" +
+                                "⇥⇥${mutableState.slots.keys.joinToString(", \n") { "$it = ${mutableState.slots.getValue(it).name}" }}\n" +
+                                "⇤⇤)", data.internalModelType)
+                        .addStatement("%N = newSnapshot", mutableState.snapshotProperty)
+                        .addStatement("%N = %N", mutableState.snapshotVersionProperty, mutableState.versionProperty)
+                        .addStatement("return newSnapshot")
+                        .build())
+                .build()
+    }
+
+    fun mutableStateGenerationData(data: ViewWithDelegateGenerationData, internalProperties: List<PropertyData>, changeMask: ChangeMask): MutableStateGenerationData {
+        if (changeMask.hasSharedBits) throw IllegalArgumentException("mutableState supports up to ${Long.SIZE_BITS} fields. Can't apply to ${data.delegateType.canonicalName}")
+        return MutableStateGenerationData(
+                slots = internalProperties.associate {
+                    it.name to PropertySpec.builder("state${it.name.capitalize()}", it.type)
+                            .mutable()
+                            .addModifiers(KModifier.PRIVATE)
+                            .initializer(it.defaultValuePattern, it.defaultValueClass)
+                            .build()
+                },
+                versionProperty = PropertySpec.builder("stateVersion", INT).mutable().addModifiers(KModifier.PRIVATE).initializer("0").build(),
+                snapshotProperty = PropertySpec.builder("stateSnapshot", data.internalModelType.copy(nullable = true)).mutable().addModifiers(KModifier.PRIVATE).initializer("null").build(),
+                snapshotVersionProperty = PropertySpec.builder("snapshotVersion", INT).mutable().addModifiers(KModifier.PRIVATE).initializer("-1").build(),
+                deliveredStateProperty = if (ViewWithDelegateGenerationData.NEW_STATE_CALLBACK in data.overriddenStateCallbacks)
+                    PropertySpec.builder("deliveredState", data.internalModelType).mutable().addModifiers(KModifier.PRIVATE).initializer("%T()", data.internalModelType).build()
+                else
+                    null,
+                validatesInput = ViewWithDelegateGenerationData.VALIDATE_INPUT_CALLBACK in data.overriddenStateCallbacks
+        )
+    }
+
+    /**
+     * Code that reads current value of property [name]. Inside of batch it is value, that is not applied yet
+     */
+    fun currentValue(name: String, batch: BatchGenerationData, mutableState: MutableStateGenerationData?): CodeBlock =
+            if (mutableState != null) CodeBlock.of("%N", mutableState.slots.getValue(name)) else CodeBlock.of("%N.$name", batch.inputModelProperty!!)
+
+    /**
+     * The only place where internal model is changed. Children are updated only for properties marked in mask of changes.
+     * If [frameRender] is set, children update is postponed to next frame and changes of all updates before it are merged.
+     * With [mutableState] new model is written to slots, and the rest is done by [renderStateFunction]
+     */
+    fun updateInternalModelFunction(data: ViewWithDelegateGenerationData, internalModelProperty: PropertySpec, delegateProperty: PropertySpec, listFieldsGenerationData: List<ListFieldGenerationData>, childrenUpdateProperty: PropertySpec, frameRender: FrameRenderGenerationData?, visibilityGates: VisibilityGateGenerationData?, viewModelSnapshot: ViewModelSnapshotGenerationData?, mutableState: MutableStateGenerationData?, renderStateFunction: FunSpec?, changeMask: ChangeMask): FunSpec {
+        val newValue = ParameterSpec.builder("newValue", data.internalModelType).build()
+        val changes = ParameterSpec.builder("changes", changeMask.type).build()
+        return FunSpec.builder("updateIntModel")
+                .addModifiers(KModifier.PRIVATE)
+                .addParameter(newValue)
+                .addParameter(changes)
+                .addStatement("if (%N == ${changeMask.zero}) return", changes)
+                .apply {
+                    if (mutableState != null) {
+                        addSlotsWrite(mutableState, changeMask, "newValue", "changes")
+                        addStatement("%N = %N", mutableState.snapshotProperty, newValue)
+                        addStatement("%N = %N", mutableState.snapshotVersionProperty, mutableState.versionProperty)
+                        addStatement("%N(%N)", renderStateFunction!!, changes)
+                    } else {
+                        addStatement("val oldValue = %N", internalModelProperty)
+                        addStatement("%N = %N", internalModelProperty, newValue)
+                        addStateRender(data, listFieldsGenerationData, childrenUpdateProperty, frameRender, visibilityGates, viewModelSnapshot, changeMask) { "newValue.$it" }
+                        addStatement("%N.onNewInternalState(oldValue, %N, ${changeMask.asLong("changes")})", delegateProperty, newValue)
+                    }
+                }
+                .build()
+    }
+
+    /**
+     * Applies changes of mutable state, that are already written to slots. Delegate gets callback only if it observes state,
+     * otherwise only `internalState` of delegate is set
+     */
+    fun renderStateFunction(data: ViewWithDelegateGenerationData, internalModelProperty: PropertySpec, delegateProperty: PropertySpec, listFieldsGenerationData: List<ListFieldGenerationData>, childrenUpdateProperty: PropertySpec, frameRender: FrameRenderGenerationData?, visibilityGates: VisibilityGateGenerationData?, viewModelSnapshot: ViewModelSnapshotGenerationData?, mutableState: MutableStateGenerationData, changeMask: ChangeMask): FunSpec {
+        return FunSpec.builder("renderState")
+                .addModifiers(KModifier.PRIVATE)
+                .addParameter("changes", changeMask.type)
+                .addStateRender(data, listFieldsGenerationData, childrenUpdateProperty, frameRender, visibilityGates, viewModelSnapshot, changeMask) { mutableState.slots.getValue(it).name }
+                .apply {
+                    if (mutableState.deliveredStateProperty != null) {
+                        addStatement("val newState = %N", internalModelProperty)
+                        addStatement("%N.onNewInternalState(%N, newState, ${changeMask.asLong("changes")})", delegateProperty, mutableState.deliveredStateProperty)
+                        addStatement("%N = newState", mutableState.deliveredStateProperty)
+                    } else {
+                        // Delegate may read internalState field, that is set only by base onNewInternalState. Generated view is in package of delegate
+                        addStatement("%N.internalState = %N", delegateProperty, internalModelProperty)
+                    }
+                }
+                .build()
+    }
+
+    /**
+     * Called by setters of mutable state after value is written to slot
+     */
+    fun applyWriteFunction(data: ViewWithDelegateGenerationData, internalModelProperty: PropertySpec, applyInputFunction: FunSpec, renderStateFunction: FunSpec, listenersMap: Map<String, ListenerGenerationData>, batch: BatchGenerationData, viewModelSnapshot: ViewModelSnapshotGenerationData?, mutableState: MutableStateGenerationData, changeMask: ChangeMask): FunSpec {
+        val changes = ParameterSpec.builder("changes", changeMask.type).build()
+        return FunSpec.builder("applyWrite")
+                .addModifiers(KModifier.PRIVATE)
+                .addParameter(changes)
+                .beginControlFlow("if (%N > 0)", batch.depthProperty)
+                .addStatement("%1N = %1N or %2N", batch.pendingChangesProperty, changes)
+                .apply { if (viewModelSnapshot != null) addSnapshotInvalidation(viewModelSnapshot, changeMask, "changes") }
+                .addStatement("return")
+                .endControlFlow()
+                .apply {
+                    if (mutableState.validatesInput) {
+                        addStatement("%N(%N, %N)", applyInputFunction, internalModelProperty, changes)
+                    } else {
+                        addStatement("%N(%N)", renderStateFunction, changes)
+                        extListeners(data, listenersMap).forEach { (name, listener) ->
+                            addStatement("if·(%1L)·%2L", changeMask.isChanged(name, "changes", "", ""), listener.notify(CodeBlock.of("%N", mutableState.slots.getValue(name))))
+                        }
+                    }
+                }
+                .build()
+    }
+
+    private fun FunSpec.Builder.addSlotsWrite(mutableState: MutableStateGenerationData, changeMask: ChangeMask, newValue: String, changes: String) = this
+            .apply {
+                mutableState.slots.forEach { (name, slot) ->
+                    addStatement("if·(%L)·%N = $newValue.$name", changeMask.isChanged(name, changes, "", ""), slot)
+                }
+            }
+            .addStatement("%N++", mutableState.versionProperty)
+
+    private fun FunSpec.Builder.addStateRender(data: ViewWithDelegateGenerationData, listFieldsGenerationData: List<ListFieldGenerationData>, childrenUpdateProperty: PropertySpec, frameRender: FrameRenderGenerationData?, visibilityGates: VisibilityGateGenerationData?, viewModelSnapshot: ViewModelSnapshotGenerationData?, changeMask: ChangeMask, valueOf: (String) -> String) = this
+            .apply { if (viewModelSnapshot != null) addSnapshotInvalidation(viewModelSnapshot, changeMask, "changes") }
+            .apply {
+                if (frameRender == null) {
+                    addChildrenUpdate(data, listFieldsGenerationData, childrenUpdateProperty, visibilityGates, changeMask, "changes", "oldValue", "newValue", valueOf)
+                } else {
+                    addStatement("%1N = %1N or changes", frameRender.changesProperty)
+                    beginControlFlow("if (!%N)", frameRender.scheduledProperty)
+                    addStatement("%N = true", frameRender.scheduledProperty)
+                    addStatement("%T.getInstance().postFrameCallback(%N)", choreographerClass, frameRender.callbackProperty)
+                    endControlFlow()
+                }
+            }
+
+    fun frameRenderGenerationData(data: ViewWithDelegateGenerationData, internalModelProperty: PropertySpec, listFieldsGenerationData: List<ListFieldGenerationData>, childrenUpdateProperty: PropertySpec, visibilityGates: VisibilityGateGenerationData?, mutableState: MutableStateGenerationData?, changeMask: ChangeMask): FrameRenderGenerationData {
+        val scheduledProperty = PropertySpec.builder("renderScheduled", BOOLEAN).mutable().addModifiers(KModifier.PRIVATE).initializer("false").build()
+        val changesProperty = PropertySpec.builder("renderChanges", changeMask.type).mutable().addModifiers(KModifier.PRIVATE).initializer(changeMask.zero).build()
+        // Values of properties with shared bit are compared with last rendered state
+        val renderedModelProperty = if (changeMask.hasSharedBits) PropertySpec.builder("renderedModel", data.internalModelType).mutable().addModifiers(KModifier.PRIVATE).initializer("%N", internalModelProperty).build() else null
+        val renderFunction = FunSpec.builder("renderChildren")
+                .addModifiers(KModifier.PRIVATE)
+                .addStatement("%N = false", scheduledProperty)
+                .addStatement("val changes = %N", changesProperty)
+                .addStatement("%N = ${changeMask.zero}", changesProperty)
+                .apply {
+                    if (mutableState != null) {
+                        addChildrenUpdate(data, listFieldsGenerationData, childrenUpdateProperty, visibilityGates, changeMask, "changes", "oldValue", "newValue") { mutableState.slots.getValue(it).name }
+                    } else {
+                        addStatement("val newValue = %N", internalModelProperty)
+                        if (renderedModelProperty != null) {
+                            addStatement("val oldValue = %N", renderedModelProperty)
+                            addStatement("%N = newValue", renderedModelProperty)
+                        }
+                        addChildrenUpdate(data, listFieldsGenerationData, childrenUpdateProperty, visibilityGates, changeMask, "changes", "oldValue", "newValue") { "newValue.$it" }
+                    }
+                }
+                .build()
+        val callbackProperty = PropertySpec.builder("renderCallback", choreographerClass.nestedClass("FrameCallback"))
+                .addModifiers(KModifier.PRIVATE)
+                .initializer("%T { %N() }", choreographerClass.nestedClass("FrameCallback"), renderFunction)
+                .build()
+        return FrameRenderGenerationData(scheduledProperty, changesProperty, renderedModelProperty, callbackProperty, renderFunction)
+    }
+
+    private fun FunSpec.Builder.addChildrenUpdate(data: ViewWithDelegateGenerationData, listFieldsGenerationData: List<ListFieldGenerationData>, childrenUpdateProperty: PropertySpec, visibilityGates: VisibilityGateGenerationData?, changeMask: ChangeMask, changes: String, oldValue: String, newValue: String, valueOf: (String) -> String) = this
+            .addStatement("%N = true", childrenUpdateProperty)
+            .apply { if (visibilityGates != null) addVisibilityGates(visibilityGates, changeMask, changes, valueOf) }
+            .apply {
+                val gatedFields = visibilityGates?.gatedFields.orEmpty()
+                data.basicFields
+                        .filter { it.childName.isNotEmpty() }
+                        .forEach {
+                            // Pending change of gated field may have equal old and new values, so shared bit is not checked by values
+                            val isChanged = if (it.name in gatedFields) changeMask.isAnyBitSet(listOf(it.name), GATED_CHANGES) else changeMask.isChanged(it.name, changes, oldValue, newValue)
+                            addStatement("if·(%L)·${it.resolveSetter(it.childName, valueOf(it.name))}", isChanged)
+                        }
+            }
+            .apply {
+                listFieldsGenerationData
+                        .filter { it.childListView.isNotEmpty() }
+                        .forEach { listField ->
+                            val wrapMethod = data.wrapAdapterMapping.find { it.first == listField.name }?.second
+                            val isChanged = changeMask.isChanged(listField.name, changes, oldValue, newValue)
+                            // TODO Need use typeName, but this is hard for now
+                            if (wrapMethod == null) {
+                                addStatement("if·(%L)·${listField.childListView}.setAdapter(${listField.name.capitalize()}Adapter(context,·${valueOf(listField.name)}))", isChanged)
+                            } else {
+                                addStatement("if·(%L)·${listField.childListView}.setAdapter(delegate.$wrapMethod(${listField.name.capitalize()}Adapter(context,·${valueOf(listField.name)})))", isChanged)
+                            }
+                        }
+            }
+            .addStatement("%N = false", childrenUpdateProperty)
+
+    /**
+     * Changes of gated fields are moved to pending mask while gate is `GONE` and returned to changes of children when it is not.
+     * Gated fields are updated by [GATED_CHANGES] mask
+     */
+    private fun FunSpec.Builder.addVisibilityGates(visibilityGates: VisibilityGateGenerationData, changeMask: ChangeMask, changes: String, valueOf: (String) -> String) = this
+            .addStatement("var $GATED_CHANGES = $changes or %N", visibilityGates.pendingChangesProperty)
+            .apply {
+                visibilityGates.gates.forEach { (gate, fields) ->
+                    val bits = fields.map { changeMask.bit(it) }.distinct().joinToCode(" or ")
+                    beginControlFlow("if (${valueOf(gate)} == %T.GONE)", viewClass)
+                    addStatement("%1N = %1N or ($GATED_CHANGES and (%2L))", visibilityGates.pendingChangesProperty, bits)
+                    addStatement("$GATED_CHANGES = $GATED_CHANGES and (%L).inv()", bits)
+                    nextControlFlow("else")
+                    addStatement("%1N = %1N and (%2L).inv()", visibilityGates.pendingChangesProperty, bits)
+                    endControlFlow()
+                }
+            }
+
+    /**
+     * Gate must be visibility field of the same view. Gated fields without child are not rendered, so they are skipped
+     */
+    fun visibilityGateGenerationData(data: ViewWithDelegateGenerationData, changeMask: ChangeMask): VisibilityGateGenerationData? {
+        val gates = data.basicFields
+                .filter { it.gatedBy.isNotEmpty() && it.childName.isNotEmpty() }
+                .groupBy({ it.gatedBy }, { it.name })
+        if (gates.isEmpty()) return null
+        gates.keys.forEach { gate ->
+            if (data.basicFields.none { it.name == gate && it.byProperty == ViewProperty.visibility }) throw IllegalStateException("Field \"$gate\" in gatedBy of ${data.delegateType} must be ViewProperty.visibility field")
+        }
+        val pendingChangesProperty = PropertySpec.builder("gatedChanges", changeMask.type).mutable().addModifiers(KModifier.PRIVATE).initializer(changeMask.zero).build()
+        return VisibilityGateGenerationData(pendingChangesProperty, gates)
+    }
+
+    fun viewModelSnapshotGenerationData(data: ViewWithDelegateGenerationData, publicModelProperties: List<PropertyData>, batch: BatchGenerationData, mutableState: MutableStateGenerationData?): ViewModelSnapshotGenerationData {
+        val snapshotProperty = PropertySpec.builder("viewModelSnapshot", data.externalModelType.copy(nullable = true))
                 .mutable()
                 .addModifiers(KModifier.PRIVATE)
-                .delegate(
-                        CodeBlock.builder()
-                                .add("""
-                                                    |%1T.observable(%2T())·{·_,·oldValue,·newValue·->
-                                                    |··if (oldValue == newValue) return@observable
-                                                    |
-                                                    |
-                                                """.trimMargin(), Delegates::class.asTypeName(), data.internalModelType)
-                                .addStatement("%N = true", childrenUpdateProperty)
-                                .apply {
-                                    data.basicFields
-                                            .filter { it.childName.isNotEmpty() }
-                                            .forEach {
-                                                addStatement("··if·(oldValue.${it.name}·!=·newValue.${it.name})·${it.resolveSetter(it.childName, "newValue.${it.name}")}")
-                                            }
-                                }
-                                .apply {
-                                    listFieldsGenerationData
-                                            .filter { it.childListView.isNotEmpty() }
-                                            .forEach { listField ->
-                                                val wrapMethod = data.wrapAdapterMapping.find { it.first.value == listField.name }?.second
-                                                // TODO Need use typeName, but this is hard for now
-                                                if (wrapMethod == null) {
-                                                    addStatement("··if·(oldValue.${listField.name}·!=·newValue.${listField.name})·${listField.childListView}.setAdapter(${listField.name.capitalize()}Adapter(context,·newValue.${listField.name}))")
-                                                } else {
-                                                    addStatement("··if·(oldValue.${listField.name}·!=·newValue.${listField.name})·${listField.childListView}.setAdapter(delegate.${wrapMethod.simpleName}(${listField.name.capitalize()}Adapter(context,·newValue.${listField.name})))")
-                                                }
-                                            }
-                                }
-                                .addStatement("%N = false", childrenUpdateProperty)
-                                .add("""
-                                                    |
-                                                    |  %N.onNewInternalState(newValue)
-                                                    |}
-                                                """.trimMargin(), delegateProperty)
-                                .build()
-                )
+                .initializer("null")
+                .build()
+        val snapshotFunction = FunSpec.builder("snapshotViewModel")
+                .addModifiers(KModifier.PRIVATE)
+                .returns(data.externalModelType)
+                .addStatement("%1N?.let { return it }", snapshotProperty)
+                .addStatement("val snapshot = %T(\n" +
+                        "⇥⇥%L\n" +
+                        "⇤⇤)", data.externalModelType, publicModelProperties.map { CodeBlock.of("${it.name} = %L", currentValue(it.name, batch, mutableState)) }.joinToCode(", \n"))
+                .addStatement("%N = snapshot", snapshotProperty)
+                .addStatement("return snapshot")
+                .build()
+        return ViewModelSnapshotGenerationData(snapshotProperty, snapshotFunction, publicModelProperties.map { it.name })
+    }
+
+    private fun FunSpec.Builder.addSnapshotInvalidation(viewModelSnapshot: ViewModelSnapshotGenerationData, changeMask: ChangeMask, changes: String) =
+            addStatement("if (%L) %N = null", changeMask.isAnyBitSet(viewModelSnapshot.fieldNames, changes), viewModelSnapshot.snapshotProperty)
+
+    /**
+     * Mutable state is written to slots directly, so there is no pending model for it
+     */
+    fun batchGenerationData(data: ViewWithDelegateGenerationData, internalModelProperty: PropertySpec, changeMask: ChangeMask, hasPublicModel: Boolean, mutableState: MutableStateGenerationData?): BatchGenerationData {
+        val pendingModelProperty = if (mutableState == null) PropertySpec.builder("pendingModel", data.internalModelType.copy(nullable = true))
+                .mutable()
+                .addModifiers(KModifier.PRIVATE)
+                .initializer("null")
+                .build() else null
+        return BatchGenerationData(
+                depthProperty = PropertySpec.builder("batchDepth", INT).mutable().addModifiers(KModifier.PRIVATE).initializer("0").build(),
+                pendingModelProperty = pendingModelProperty,
+                pendingChangesProperty = PropertySpec.builder("pendingChanges", changeMask.type).mutable().addModifiers(KModifier.PRIVATE).initializer(changeMask.zero).build(),
+                pendingViewModelProperty = if (hasPublicModel) PropertySpec.builder("pendingViewModelChanged", BOOLEAN).mutable().addModifiers(KModifier.PRIVATE).initializer("false").build() else null,
+                inputModelProperty = pendingModelProperty?.let {
+                    PropertySpec.builder("inputModel", data.internalModelType)
+                            .addModifiers(KModifier.PRIVATE)
+                            .getter(FunSpec.getterBuilder().addStatement("return %N ?: %N", it, internalModelProperty).build())
+                            .build()
+                }
+        )
+    }
+
+    /**
+     * Applies state set from outside of view. [changeMask] of input is known by caller and is used as is, if delegate doesn't change input.
+     * Changes made by delegate are notified as internal changes. Inside of batch input is only collected
+     */
+    fun applyInputFunction(
+            data: ViewWithDelegateGenerationData,
+            internalModelProperty: PropertySpec,
+            delegateProperty: PropertySpec,
+            updateFunction: FunSpec,
+            notifyChangeFunction: FunSpec?,
+            listenersMap: Map<String, ListenerGenerationData>,
+            batch: BatchGenerationData,
+            viewModelSnapshot: ViewModelSnapshotGenerationData?,
+            mutableState: MutableStateGenerationData?,
+            changeMask: ChangeMask
+    ): FunSpec {
+        val input = ParameterSpec.builder("input", data.internalModelType).build()
+        val inputChanges = ParameterSpec.builder("inputChanges", changeMask.type).build()
+        val extListeners = extListeners(data, listenersMap)
+        return FunSpec.builder("applyInput")
+                .addModifiers(KModifier.PRIVATE)
+                .addParameter(input)
+                .addParameter(inputChanges)
+                .beginControlFlow("if (%N > 0)", batch.depthProperty)
+                .apply {
+                    if (mutableState != null) addSlotsWrite(mutableState, changeMask, "input", "inputChanges")
+                    else addStatement("%N = %N", batch.pendingModelProperty!!, input)
+                }
+                .addStatement("%1N = %1N or %2N", batch.pendingChangesProperty, inputChanges)
+                .apply { if (viewModelSnapshot != null) addSnapshotInvalidation(viewModelSnapshot, changeMask, "inputChanges") }
+                .addStatement("return")
+                .endControlFlow()
+                .apply { if (changeMask.hasSharedBits && extListeners.isNotEmpty()) addStatement("val oldModel = %N", internalModelProperty) }
+                .addStatement("val validated = %N.validateStateForNewInput(%N)", delegateProperty, input)
+                .beginControlFlow("if (validated === %N)", input)
+                .addStatement("%N(validated, %N)", updateFunction, inputChanges)
+                .nextControlFlow("else")
+                .apply {
+                    // Slots of mutable state may already contain input, so its changes are added explicitly
+                    if (mutableState != null) addStatement("%N(validated, %N or validated.${ChangeMask.CHANGES_FUNCTION}(%N))", updateFunction, inputChanges, input)
+                    else addStatement("%N(validated, validated.${ChangeMask.CHANGES_FUNCTION}(%N))", updateFunction, internalModelProperty)
+                }
+                .apply {
+                    if (notifyChangeFunction != null) {
+                        addStatement("%1N(%2N, validated, validated.${ChangeMask.CHANGES_FUNCTION}(%2N))", notifyChangeFunction, input)
+                    }
+                }
+                .endControlFlow()
+                .apply {
+                    extListeners.forEach { (name, listener) ->
+                        addStatement("if·(%1L)·%2L", changeMask.isChanged(name, "inputChanges", "oldModel", "input"), listener.notify(CodeBlock.of("%N.$name", input)))
+                    }
+                }
+                .build()
+    }
+
+    private fun extListeners(data: ViewWithDelegateGenerationData, listenersMap: Map<String, ListenerGenerationData>) =
+            data.basicFields.filter { it.rwType.notifyExtChanges }.mapNotNull { field -> listenersMap[field.name]?.let { field.name to it } }
+
+    /**
+     * Runs [batch] block and applies all properties set inside of it at once: state is validated, children are updated and listeners
+     * are notified only one time. If block fails, collected changes are dropped. Mutable state is changed by block directly, so
+     * slots are restored from state, that view had before outer batch
+     */
+    fun batchFunction(data: ViewWithDelegateGenerationData, internalModelProperty: PropertySpec, applyInputFunction: FunSpec, applyWriteFunction: FunSpec?, mutableState: MutableStateGenerationData?, batch: BatchGenerationData, changeMask: ChangeMask, viewModelSnapshot: ViewModelSnapshotGenerationData?, onViewModelChangedListener: ListenerGenerationData?): FunSpec {
+        val block = ParameterSpec.builder("block", LambdaTypeName.get(receiver = data.generateViewType, returnType = UNIT)).build()
+        if (applyWriteFunction != null && mutableState != null) {
+            return FunSpec.builder("batch")
+                    .addParameter(block)
+                    .addStatement("val rollback = if (%N == 0) %N else null", batch.depthProperty, internalModelProperty)
+                    .addStatement("%N++", batch.depthProperty)
+                    .beginControlFlow("try")
+                    .addStatement("%N()", block)
+                    .nextControlFlow("catch (e: %T)", Throwable::class)
+                    .beginControlFlow("if (--%N == 0)", batch.depthProperty)
+                    .addStatement("%N = ${changeMask.zero}", batch.pendingChangesProperty)
+                    .apply { if (batch.pendingViewModelProperty != null) addStatement("%N = false", batch.pendingViewModelProperty) }
+                    .apply { if (viewModelSnapshot != null) addStatement("%N = null", viewModelSnapshot.snapshotProperty) }
+                    .beginControlFlow("if (rollback != null)")
+                    .apply { mutableState.slots.forEach { (name, slot) -> addStatement("%N = rollback.$name", slot) } }
+                    .addStatement("%N++", mutableState.versionProperty)
+                    .addStatement("%N = rollback", mutableState.snapshotProperty)
+                    .addStatement("%N = %N", mutableState.snapshotVersionProperty, mutableState.versionProperty)
+                    .endControlFlow()
+                    .endControlFlow()
+                    .addStatement("throw e")
+                    .endControlFlow()
+                    .addStatement("if (--%N > 0) return", batch.depthProperty)
+                    .addStatement("val changes = %N", batch.pendingChangesProperty)
+                    .apply { if (batch.pendingViewModelProperty != null) addStatement("val viewModelChanged = %N", batch.pendingViewModelProperty) }
+                    .addStatement("%N = ${changeMask.zero}", batch.pendingChangesProperty)
+                    .apply { if (batch.pendingViewModelProperty != null) addStatement("%N = false", batch.pendingViewModelProperty) }
+                    .addStatement("if (changes != ${changeMask.zero}) %N(changes)", applyWriteFunction)
+                    .apply {
+                        if (viewModelSnapshot != null && onViewModelChangedListener != null) {
+                            addStatement("if (viewModelChanged) %L", onViewModelChangedListener.notify(CodeBlock.of("%N()", viewModelSnapshot.snapshotFunction)))
+                        }
+                    }
+                    .build()
+        }
+        return FunSpec.builder("batch")
+                .addParameter(block)
+                .addStatement("%N++", batch.depthProperty)
+                .beginControlFlow("try")
+                .addStatement("%N()", block)
+                .nextControlFlow("catch (e: %T)", Throwable::class)
+                .beginControlFlow("if (--%N == 0)", batch.depthProperty)
+                .addStatement("%N = null", batch.pendingModelProperty!!)
+                .addStatement("%N = ${changeMask.zero}", batch.pendingChangesProperty)
+                .apply { if (batch.pendingViewModelProperty != null) addStatement("%N = false", batch.pendingViewModelProperty) }
+                .apply { if (viewModelSnapshot != null) addStatement("%N = null", viewModelSnapshot.snapshotProperty) }
+                .endControlFlow()
+                .addStatement("throw e")
+                .endControlFlow()
+                .addStatement("if (--%N > 0) return", batch.depthProperty)
+                .addStatement("val pending = %N ?: return", batch.pendingModelProperty!!)
+                .addStatement("val changes = %N", batch.pendingChangesProperty)
+                .apply { if (batch.pendingViewModelProperty != null) addStatement("val viewModelChanged = %N", batch.pendingViewModelProperty) }
+                .addStatement("%N = null", batch.pendingModelProperty!!)
+                .addStatement("%N = ${changeMask.zero}", batch.pendingChangesProperty)
+                .apply { if (batch.pendingViewModelProperty != null) addStatement("%N = false", batch.pendingViewModelProperty) }
+                .addStatement("%N(pending, changes)", applyInputFunction)
+                .apply {
+                    if (viewModelSnapshot != null && onViewModelChangedListener != null) {
+                        addStatement("if (viewModelChanged) %L", onViewModelChangedListener.notify(CodeBlock.of("%N()", viewModelSnapshot.snapshotFunction)))
+                    }
+                }
                 .build()
     }
 
-    fun buildListenersSpecs(basicFields: List<ViewField>, typeMapping: Map<String, ViewWithDelegateGenerationData>): List<Pair<String, PropertySpec>> {
+    /**
+     * Applies state changed by user in child views
+     */
+    fun applyOutputFunction(data: ViewWithDelegateGenerationData, internalModelProperty: PropertySpec, delegateProperty: PropertySpec, updateFunction: FunSpec, notifyChangeFunction: FunSpec?, changeMask: ChangeMask): FunSpec {
+        val input = ParameterSpec.builder("input", data.internalModelType).build()
+        val inputChanges = ParameterSpec.builder("inputChanges", changeMask.type).build()
+        return FunSpec.builder("applyOutput")
+                .addModifiers(KModifier.PRIVATE)
+                .addParameter(input)
+                .addParameter(inputChanges)
+                .addStatement("val oldModel = %N", internalModelProperty)
+                .addStatement("val validated = %N.validateStateForOutput(%N)", delegateProperty, input)
+                .addStatement("val changes = if (validated === %N) %N else validated.${ChangeMask.CHANGES_FUNCTION}(oldModel)", input, inputChanges)
+                .addStatement("%N(validated, changes)", updateFunction)
+                .apply {
+                    if (notifyChangeFunction != null) {
+                        addStatement("%N(oldModel, validated, changes)", notifyChangeFunction)
+                    }
+                }
+                .build()
+    }
+
+    fun buildListenersSpecs(basicFields: List<ViewFieldData>, typeResolver: DelegateTypeResolver, lifecycle: LifecycleListenersGenerationData?, changeMask: ChangeMask): List<ListenerGenerationData> {
         return basicFields
                 .filter { it.rwType.notifyIntChanges }
                 .map { field ->
-                    val fieldType = field.resolveType(typeMapping)
-                    val onChangedListener = PropertySpec
-                                        .builder("on${field.name.capitalize()}Changed", LambdaTypeName.get(parameters = listOf(ParameterSpec.unnamed(fieldType)), returnType = Unit::class.asTypeName()).copy(nullable = true))
-                                        .mutable()
-                                        .initializer("null")
-                                        .build()
-                    field.name to onChangedListener
+                    val fieldType = field.resolveType(typeResolver)
+                    val defer = lifecycle?.deferDispatch(CodeBlock.of("%1N = %1N or %2L", lifecycle.pendingChangesProperty, changeMask.bit(field.name)))
+                    buildListener(field.name, fieldType, (fieldType as? ClassName)?.let { primitiveChangeListenerClasses[it] }, defer)
+                }
+    }
+
+    fun lifecycleListenersGenerationData(changeMask: ChangeMask, hasPublicModel: Boolean) = LifecycleListenersGenerationData(
+            activeProperty = PropertySpec.builder("listenersActive", BOOLEAN).mutable().addModifiers(KModifier.PRIVATE).initializer("true").build(),
+            pendingChangesProperty = PropertySpec.builder("pendingListenerChanges", changeMask.type).mutable().addModifiers(KModifier.PRIVATE).initializer(changeMask.zero).build(),
+            pendingViewModelProperty = if (hasPublicModel) PropertySpec.builder("pendingViewModelListener", BOOLEAN).mutable().addModifiers(KModifier.PRIVATE).initializer("false").build() else null,
+            ownerProperty = PropertySpec.builder("listenersOwner", lifecycleOwnerClass.copy(nullable = true)).mutable().addModifiers(KModifier.PRIVATE).initializer("null").build(),
+            observerProperty = PropertySpec.builder("listenersObserver", lifecycleEventObserverClass)
+                    .addModifiers(KModifier.PRIVATE)
+                    .initializer("%T·{·source,·event·->·${LifecycleListenersGenerationData.LIFECYCLE_EVENT_FUNCTION}(source,·event)·}", lifecycleEventObserverClass)
+                    .build()
+    )
+
+    /**
+     * Listeners are active only while owner is started. On start latest values of pending fields are delivered. Values are not kept
+     * while listeners are inactive, so field, that shares bit of [changeMask] with changed one, is delivered too. When owner is destroyed,
+     * all listeners are removed
+     */
+    fun lifecycleListenersFunctions(lifecycle: LifecycleListenersGenerationData, listeners: Collection<ListenerGenerationData>, viewModelListener: ListenerGenerationData?, viewModelSnapshot: ViewModelSnapshotGenerationData?, batch: BatchGenerationData, mutableState: MutableStateGenerationData?, changeMask: ChangeMask): List<FunSpec> {
+        val owner = ParameterSpec.builder("owner", lifecycleOwnerClass).build()
+        val bindFunction = FunSpec.builder("bindListeners")
+                .addParameter(owner)
+                .addStatement("if (%N.lifecycle.currentState == %T.DESTROYED) return", owner, lifecycleClass.nestedClass("State"))
+                .addStatement("%N?.lifecycle?.removeObserver(%N)", lifecycle.ownerProperty, lifecycle.observerProperty)
+                .addStatement("%N = %N", lifecycle.ownerProperty, owner)
+                // Observer gets events up to current state of owner, so pending changes are delivered if owner is already started
+                .addStatement("%N = false", lifecycle.activeProperty)
+                .addStatement("%N.lifecycle.addObserver(%N)", owner, lifecycle.observerProperty)
+                .build()
+        val source = ParameterSpec.builder("source", lifecycleOwnerClass).build()
+        val event = ParameterSpec.builder("event", lifecycleClass.nestedClass("Event")).build()
+        val eventFunction = FunSpec.builder(LifecycleListenersGenerationData.LIFECYCLE_EVENT_FUNCTION)
+                .addModifiers(KModifier.PRIVATE)
+                .addParameter(source)
+                .addParameter(event)
+                .beginControlFlow("if (%N == %T.ON_DESTROY)", event, lifecycleClass.nestedClass("Event"))
+                .addStatement("%N.lifecycle.removeObserver(%N)", source, lifecycle.observerProperty)
+                .addStatement("%N = null", lifecycle.ownerProperty)
+                .addStatement("%N = true", lifecycle.activeProperty)
+                .addStatement("%N = ${changeMask.zero}", lifecycle.pendingChangesProperty)
+                .apply { if (lifecycle.pendingViewModelProperty != null) addStatement("%N = false", lifecycle.pendingViewModelProperty) }
+                .apply { (listOfNotNull(viewModelListener) + listeners).flatMap { it.properties }.forEach { addStatement("%N = null", it) } }
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement("val active = %N.lifecycle.currentState.isAtLeast(%T.STARTED)", source, lifecycleClass.nestedClass("State"))
+                .addStatement("if (active == %N) return", lifecycle.activeProperty)
+                .addStatement("%N = active", lifecycle.activeProperty)
+                .addStatement("if (!active) return")
+                .apply {
+                    if (lifecycle.pendingViewModelProperty != null && viewModelListener != null && viewModelSnapshot != null) {
+                        beginControlFlow("if (%N)", lifecycle.pendingViewModelProperty)
+                        addStatement("%N = false", lifecycle.pendingViewModelProperty)
+                        addStatement("%L", viewModelListener.notify(CodeBlock.of("%N()", viewModelSnapshot.snapshotFunction)))
+                        endControlFlow()
+                    }
+                }
+                .addStatement("val changes = %N", lifecycle.pendingChangesProperty)
+                .addStatement("%N = ${changeMask.zero}", lifecycle.pendingChangesProperty)
+                .apply {
+                    listeners.forEach {
+                        addStatement("if·((changes and %L) != ${changeMask.zero})·%L", changeMask.bit(it.name), it.notify(currentValue(it.name, batch, mutableState)))
+                    }
                 }
+                .build()
+        return listOf(bindFunction, eventFunction)
+    }
+
+    /**
+     * Listener interface property is generated only if [listenerType] is set. Otherwise subscribers of registry get [valueChangeListenerClass].
+     * If [defer] is set, it is added to beginning of dispatch function
+     */
+    fun buildListener(name: String, valueType: TypeName, listenerType: TypeName?, defer: CodeBlock?): ListenerGenerationData {
+        val lambdaProperty = PropertySpec
+                .builder("on${name.capitalize()}Changed", LambdaTypeName.get(parameters = listOf(ParameterSpec.unnamed(valueType)), returnType = Unit::class.asTypeName()).copy(nullable = true))
+                .mutable()
+                .initializer("null")
+                .build()
+        val listenerProperty = listenerType?.let {
+            PropertySpec
+                    .builder("on${name.capitalize()}ChangedListener", it.copy(nullable = true))
+                    .mutable()
+                    .initializer("null")
+                    .build()
+        }
+        val subscriberType = listenerType ?: valueChangeListenerClass.parameterizedBy(valueType)
+        val registryType = listenerRegistryClass.parameterizedBy(subscriberType)
+        val registryProperty = PropertySpec
+                .builder("${name}ChangedListeners", registryType.copy(nullable = true))
+                .mutable()
+                .addModifiers(KModifier.PRIVATE)
+                .initializer("null")
+                .build()
+        val subscriber = ParameterSpec.builder("listener", subscriberType).build()
+        val addFunction = FunSpec.builder("addOn${name.capitalize()}ChangedListener")
+                .addParameter(subscriber)
+                .addStatement("val registry = %N ?: %T()", registryProperty, registryType)
+                .addStatement("%N = registry", registryProperty)
+                .addStatement("registry.add(%N)", subscriber)
+                .build()
+        val removeFunction = FunSpec.builder("removeOn${name.capitalize()}ChangedListener")
+                .addParameter(subscriber)
+                .addStatement("%N?.remove(%N)", registryProperty, subscriber)
+                .build()
+        val value = ParameterSpec.builder("value", valueType).build()
+        val dispatchFunction = FunSpec.builder("dispatch${name.capitalize()}Changed")
+                .addModifiers(KModifier.PRIVATE)
+                .apply { if (subscriberType is ParameterizedTypeName) addAnnotation(AnnotationSpec.builder(Suppress::class).addMember("%S", "UNCHECKED_CAST").build()) }
+                .addParameter(value)
+                .apply { if (defer != null) addCode(defer) }
+                .apply { if (listenerProperty != null) addStatement("%N?.onChanged(%N)", listenerProperty, value) }
+                .addStatement("%N?.invoke(%N)", lambdaProperty, value)
+                // Registry array is replaced on change, so listeners may unsubscribe while it is iterated
+                .addStatement("val listeners = %N?.listeners ?: return", registryProperty)
+                .addStatement("for (listener in listeners) (listener as %T).onChanged(%N)", subscriberType, value)
+                .build()
+        return ListenerGenerationData(name, lambdaProperty, listenerProperty, registryProperty, addFunction, removeFunction, dispatchFunction)
     }
 
     fun buildFieldsSpecs(
             data: ViewWithDelegateGenerationData,
-            listenersMap: Map<String, PropertySpec>,
-            internalModelProperty: PropertySpec,
-            delegateProperty: PropertySpec,
-            notifyChangeFunction: FunSpec?,
-            processingTypeMap: Map<String, ViewWithDelegateGenerationData>
+            listenersMap: Map<String, ListenerGenerationData>,
+            applyInputFunction: FunSpec,
+            applyWriteFunction: FunSpec?,
+            batch: BatchGenerationData,
+            mutableState: MutableStateGenerationData?,
+            changeMask: ChangeMask,
+            typeResolver: DelegateTypeResolver
     ): List<FieldMethodsGenerationMetadata> {
+        fun FunSpec.Builder.addWrite(name: String, value: ParameterSpec) = apply {
+            addStatement("if (%L == %N) return", currentValue(name, batch, mutableState), value)
+            if (mutableState != null && applyWriteFunction != null) {
+                addStatement("%N = %N", mutableState.slots.getValue(name), value)
+                addStatement("%N++", mutableState.versionProperty)
+                addStatement("%N(%L)", applyWriteFunction, changeMask.bit(name))
+            } else {
+                addStatement("%1N(%2N.copy($name = %3N), %4L)", applyInputFunction, batch.inputModelProperty!!, value, changeMask.bit(name))
+            }
+        }
+
         val basicFields = data.basicFields
                 .filter { it.rwType.public }
                 .map { field ->
-                    val fieldType = field.resolveType(processingTypeMap)
+                    val fieldType = field.resolveType(typeResolver)
                     val onChangedListener = listenersMap[field.name]
 
                     val fieldProperty = PropertySpec
                             .builder(field.name, fieldType)
-                            .getter(FunSpec.getterBuilder().addStatement("return %N.${field.name}", internalModelProperty).build())
+                            .getter(FunSpec.getterBuilder().addStatement("return %L", currentValue(field.name, batch, mutableState)).build())
                             .also {
                                 if (field.rwType.mutablePublic) {
                                     val setterParameter = ParameterSpec.builder("new${field.name.capitalize()}", fieldType).build()
                                     it.mutable().setter(
                                             FunSpec.setterBuilder()
                                                     .addParameter(setterParameter)
-                                                    .addStatement("if (%1N.${field.name} == %2N) return", internalModelProperty, setterParameter)
-                                                    .addStatement("val old${field.name.capitalize()} = %1N.copy(${field.name} = %2N)", internalModelProperty, setterParameter)
-                                                    .addStatement("%1N = %2N.validateStateForNewInput(old${field.name.capitalize()})", internalModelProperty, delegateProperty)
-                                                    .apply {
-                                                        if (notifyChangeFunction != null) {
-                                                            addStatement("%1N(old${field.name.capitalize()}, %2N)", notifyChangeFunction, internalModelProperty)
-                                                        }
-                                                    }
-                                                    .apply {
-                                                        if (field.rwType.notifyExtChanges) {
-                                                            onChangedListener?.apply {
-                                                                addStatement("%1N?.invoke(%2N)", this, setterParameter)
-                                                            }
-                                                        }
-                                                    }
+                                                    .addWrite(field.name, setterParameter)
                                                     .build()
                                     )
                                 }
                             }
                             .build()
-                    FieldMethodsGenerationMetadata(name = field.name, readWriteProperty = fieldProperty, listenerProperty = onChangedListener)
+                    FieldMethodsGenerationMetadata(name = field.name, readWriteProperty = fieldProperty, listener = onChangedListener)
                 }
 
         val listFields = data.collectionFields
                 .filter { it.rwType.public }
                 .map { field ->
-                    val fieldType = itemsDSClass.parameterizedBy(field.getModelType(processingTypeMap))
+                    val fieldType = itemsDSClass.parameterizedBy(field.getModelType(typeResolver))
                     val fieldProperty = PropertySpec
                             .builder(field.name, fieldType)
-                            .getter(FunSpec.getterBuilder().addStatement("return %N.${field.name}", internalModelProperty!!).build())
+                            .getter(FunSpec.getterBuilder().addStatement("return %L", currentValue(field.name, batch, mutableState)).build())
                             .mutable()
                             .setter(
-                                    FunSpec.setterBuilder()
-                                            .addParameter(ParameterSpec.builder("value", fieldType).build())
-                                            .addStatement("if (%1N.${field.name} == value) return", internalModelProperty)
-                                            .addStatement("%1N = %2N.validateStateForNewInput(%1N.copy(${field.name} = value))", internalModelProperty, delegateProperty)
-                                            .build()
+                                    ParameterSpec.builder("value", fieldType).build().let { value ->
+                                        FunSpec.setterBuilder()
+                                                .addParameter(value)
+                                                .addWrite(field.name, value)
+                                                .build()
+                                    }
                             )
                             .build()
 
-                    FieldMethodsGenerationMetadata(name = field.name, readWriteProperty = fieldProperty, listenerProperty = null)
+                    FieldMethodsGenerationMetadata(name = field.name, readWriteProperty = fieldProperty, listener = null)
                 }
 
         return basicFields + listFields
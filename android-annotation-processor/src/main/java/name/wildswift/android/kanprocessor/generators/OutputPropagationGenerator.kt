@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.generators
+
+import com.squareup.kotlinpoet.*
+import name.wildswift.android.kannotations.OutputPropagation
+import name.wildswift.android.kannotations.ViewProperty
+import name.wildswift.android.kanprocessor.datahelpers.ChangeMask
+import name.wildswift.android.kanprocessor.datahelpers.DeferredOutputData
+import name.wildswift.android.kanprocessor.datahelpers.OutputPropagationGenerationData
+import name.wildswift.android.kanprocessor.datahelpers.OutputPropagationGenerationData.Companion.FLUSH_FUNCTION
+import name.wildswift.android.kanprocessor.datahelpers.OutputPropagationGenerationData.Companion.PROPAGATE_FUNCTION
+import name.wildswift.android.kanprocessor.datahelpers.OutputPropagationGenerationData.Companion.SCHEDULE_FUNCTION
+import name.wildswift.android.kanprocessor.datahelpers.ViewFieldData
+import name.wildswift.android.kanprocessor.datahelpers.ViewWithDelegateGenerationData
+import name.wildswift.android.kanprocessor.utils.focusChangeListenerClass
+import name.wildswift.android.kanprocessor.utils.systemClockClass
+
+/**
+ * Generates delayed output of active children. All fields share one callback, that is posted to view for the nearest time of output,
+ * so nothing is allocated per change of child
+ */
+object OutputPropagationGenerator {
+
+    fun outputPropagationGenerationData(data: ViewWithDelegateGenerationData, changeMask: ChangeMask): OutputPropagationGenerationData? {
+        val fields = data.basicFields.filter { it.childName.isNotEmpty() && it.activeChild && it.propagation != OutputPropagation.Immediate }
+        if (fields.isEmpty()) return null
+        if (changeMask.hasSharedBits) throw IllegalStateException("Propagation policy of active child is not supported for view with more than ${Long.SIZE_BITS} fields")
+        fields.forEach {
+            if (it.propagation != OutputPropagation.FocusLost && it.propagationDelay <= 0) throw IllegalStateException("Field ${it.name} has ${it.propagation} propagation without positive propagationDelay")
+        }
+        val pendingProperty = PropertySpec.builder("pendingOutput", changeMask.type).mutable().addModifiers(KModifier.PRIVATE).initializer(changeMask.zero).build()
+        return OutputPropagationGenerationData(
+                pendingProperty = pendingProperty,
+                timeProperties = fields
+                        .filter { it.propagation != OutputPropagation.FocusLost }
+                        .associate { it.name to PropertySpec.builder("${it.name}OutputTime", LONG).mutable().addModifiers(KModifier.PRIVATE).initializer("0L").build() },
+                callbackProperty = PropertySpec.builder("outputCallback", Runnable::class)
+                        .addModifiers(KModifier.PRIVATE)
+                        .initializer("%T·{·$PROPAGATE_FUNCTION()·}", Runnable::class)
+                        .build(),
+                focusListenerProperty = focusListener(fields.filter { it.propagation == OutputPropagation.FocusLost }, pendingProperty, changeMask)
+        )
+    }
+
+    /**
+     * Code of child listener, that only marks [field] as pending. Output of throttled field is applied immediately, if delay is over
+     */
+    fun markPending(propagation: OutputPropagationGenerationData, field: ViewFieldData, childrenUpdateProperty: PropertySpec, changeMask: ChangeMask): CodeBlock {
+        val bit = changeMask.bit(field.name)
+        return CodeBlock.builder()
+                .add("    if (!%N) {\n", childrenUpdateProperty)
+                .add("        %1N = %1N or %2L\n", propagation.pendingProperty, bit)
+                .apply {
+                    when (field.propagation) {
+                        OutputPropagation.Debounce -> {
+                            add("        %N = %T.uptimeMillis() + ${field.propagationDelay}\n", propagation.timeProperties.getValue(field.name), systemClockClass)
+                            add("        $SCHEDULE_FUNCTION()\n")
+                        }
+                        OutputPropagation.Throttle -> {
+                            add("        if·(%T.uptimeMillis()·>=·%N·+·${field.propagationDelay})·$FLUSH_FUNCTION(%L)·else·$SCHEDULE_FUNCTION()\n", systemClockClass, propagation.timeProperties.getValue(field.name), bit)
+                        }
+                        else -> {
+                        }
+                    }
+                }
+                .add("    }\n")
+                .build()
+    }
+
+    /**
+     * Output of field with `FocusLost` policy is applied, when focus leaves its child
+     */
+    private fun focusListener(fields: List<ViewFieldData>, pendingProperty: PropertySpec, changeMask: ChangeMask): PropertySpec? {
+        if (fields.isEmpty()) return null
+        return PropertySpec.builder("outputFocusListener", focusChangeListenerClass)
+                .addModifiers(KModifier.PRIVATE)
+                .initializer(CodeBlock.builder()
+                        .add("%T·{·oldFocus,·_·->\n", focusChangeListenerClass)
+                        .apply {
+                            fields.groupBy { it.childName }.forEach { (child, group) ->
+                                add("    if·(oldFocus·===·$child)·$FLUSH_FUNCTION(%N·and·(%L))\n", pendingProperty, group.map { changeMask.bit(it.name) }.joinToCode("·or·"))
+                            }
+                        }
+                        .add("}")
+                        .build())
+                .build()
+    }
+
+    /**
+     * Focus listener is added to view tree only while view is attached. On detach pending output is applied immediately, so last
+     * change of child is not lost and callback does not fire for detached view
+     */
+    fun attachFunctions(propagation: OutputPropagationGenerationData, delegateProperty: PropertySpec): List<FunSpec> {
+        val attachFunction = FunSpec.builder("onAttachedToWindow")
+                .addModifiers(KModifier.OVERRIDE)
+                .addStatement("super.onAttachedToWindow()")
+                .apply { if (propagation.focusListenerProperty != null) addStatement("viewTreeObserver.addOnGlobalFocusChangeListener(%N)", propagation.focusListenerProperty) }
+                .addStatement("%N.onShow()", delegateProperty)
+                .build()
+        val detachFunction = FunSpec.builder("onDetachedFromWindow")
+                .addModifiers(KModifier.OVERRIDE)
+                .apply { if (propagation.focusListenerProperty != null) addStatement("viewTreeObserver.removeOnGlobalFocusChangeListener(%N)", propagation.focusListenerProperty) }
+                .addStatement("removeCallbacks(%N)", propagation.callbackProperty)
+                .addStatement("$FLUSH_FUNCTION(%N)", propagation.pendingProperty)
+                .addStatement("super.onDetachedFromWindow()")
+                .addStatement("%N.onHide()", delegateProperty)
+                .build()
+        return listOf(attachFunction, detachFunction)
+    }
+
+    /**
+     * Values of child, that listener of [group] gets as parameters
+     */
+    fun readChild(group: List<ViewFieldData>, child: String): CodeBlock {
+        val field = group.first()
+        return when {
+            field.byProperty == ViewProperty.text -> CodeBlock.of("val text = $child.text\n")
+            field.byProperty == ViewProperty.checked -> CodeBlock.of("val isChecked = $child.isChecked\n")
+            field.byProperty == ViewProperty.timePickerHour || field.byProperty == ViewProperty.timePickerMinute -> CodeBlock.of("val hour = $child.hour\nval minute = $child.minute\n")
+            field.byProperty == ViewProperty.radioSelect -> CodeBlock.of("val checkedId = $child.checkedRadioButtonId.takeIf { it != -1 }\n")
+            field.byDelegate != null -> CodeBlock.of("val newValue = $child.viewModel\n")
+            field.childPropertyName.isNotEmpty() -> CodeBlock.of("val newValue = $child.${field.childPropertyName}\n")
+            else -> throw IllegalStateException("Field ${field.name} with ${field.propagation} propagation must have childPropertyName")
+        }
+    }
+
+    fun outputPropagationFunctions(propagation: OutputPropagationGenerationData, outputs: List<DeferredOutputData>, changeMask: ChangeMask): List<FunSpec> {
+        val timed = outputs.filter { it.field.propagation != OutputPropagation.FocusLost }
+        val scheduleFunction = FunSpec.builder(SCHEDULE_FUNCTION)
+                .addModifiers(KModifier.PRIVATE)
+                .addStatement("removeCallbacks(%N)", propagation.callbackProperty)
+                .addStatement("var next = Long.MAX_VALUE")
+                .apply {
+                    timed.forEach {
+                        addStatement("if·((%1N and %2L) != ${changeMask.zero})·next = minOf(next, %3L)", propagation.pendingProperty, changeMask.bit(it.field.name), outputTime(propagation, it.field))
+                    }
+                }
+                .addStatement("if·(next·!=·Long.MAX_VALUE)·postDelayed(%N,·maxOf(0L,·next·-·%T.uptimeMillis()))", propagation.callbackProperty, systemClockClass)
+                .build()
+        val propagateFunction = FunSpec.builder(PROPAGATE_FUNCTION)
+                .addModifiers(KModifier.PRIVATE)
+                .addStatement("val now = %T.uptimeMillis()", systemClockClass)
+                .addStatement("var due = ${changeMask.zero}")
+                .apply {
+                    timed.forEach {
+                        addStatement("if·(now >= %1L)·due = due or %2L", outputTime(propagation, it.field), changeMask.bit(it.field.name))
+                    }
+                }
+                .addStatement("$FLUSH_FUNCTION(%N and due)", propagation.pendingProperty)
+                .addStatement("$SCHEDULE_FUNCTION()")
+                .build()
+        val fields = ParameterSpec.builder("fields", changeMask.type).build()
+        val flushFunction = FunSpec.builder(FLUSH_FUNCTION)
+                .addModifiers(KModifier.PRIVATE)
+                .addParameter(fields)
+                .addStatement("if (%N == ${changeMask.zero}) return", fields)
+                .addStatement("%1N = %1N and %2N.inv()", propagation.pendingProperty, fields)
+                .apply {
+                    outputs.forEach {
+                        beginControlFlow("if ((%N and %L) != ${changeMask.zero})", fields, changeMask.bit(it.field.name))
+                        if (it.field.propagation == OutputPropagation.Throttle) addStatement("%N = %T.uptimeMillis()", propagation.timeProperties.getValue(it.field.name), systemClockClass)
+                        addCode(it.readChild)
+                        addCode(it.applyOutput)
+                        endControlFlow()
+                    }
+                }
+                .build()
+        return listOf(scheduleFunction, propagateFunction, flushFunction)
+    }
+
+    private fun outputTime(propagation: OutputPropagationGenerationData, field: ViewFieldData) =
+            if (field.propagation == OutputPropagation.Throttle) CodeBlock.of("%N + ${field.propagationDelay}", propagation.timeProperties.getValue(field.name))
+            else CodeBlock.of("%N", propagation.timeProperties.getValue(field.name))
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.generators
+
+import com.squareup.kotlinpoet.*
+import name.wildswift.android.kannotations.RandomFunctionType
+import name.wildswift.android.kanprocessor.datahelpers.RandomFunctionData
+import java.util.*
+import javax.lang.model.element.Element
+
+/**
+ * Builds file with inline functions that call randomly selected function from dictionary. Used by both kapt and KSP processors
+ */
+object RandomFunctionsGenerator {
+    fun buildRandomizerFile(className: String, pack: String, annotations: List<RandomFunctionData>, visibilityModifier: KModifier, randomizer: Random, originatingElement: Element?): FileSpec {
+        val fileName = "_${className}Randomizer"
+
+        val fileBuilder = FileSpec
+                .builder(pack, fileName)
+
+        fileBuilder.addAnnotation(AnnotationSpec.builder(Suppress::class.asTypeName())
+                .addMember("\"NOTHING_TO_INLINE\"")
+                .build())
+
+        annotations.forEach { annotation ->
+            if (annotation.dictionary.isEmpty()) throw IllegalArgumentException("Dictionary can't be empty")
+            annotation.dictionary.forEach {
+                val importPack = it.split("\\.").let { it.subList(0, it.size - 1) }.fold(StringBuilder()) { cur, new -> if (cur.isNotEmpty()) cur.append(".").append(new) else cur.append(new) }.toString()
+                val importName = it.split("\\.").last()
+                if (importPack.isNotEmpty()) {
+                    fileBuilder.addImport(importPack, importName)
+                }
+            }
+            if (annotation.type == RandomFunctionType.boolCheck) {
+                (1..annotation.count).forEach {
+                    val selectedFunction = randomizer
+                            .nextInt(annotation.dictionary.size)
+                            .let {
+                                annotation.dictionary[it].split("\\.").last()
+                            }
+                    val funSpec = FunSpec.builder("${annotation.prefix}$it")
+
+                    annotation.parameters.forEach { paramSpec ->
+                        funSpec.addParameter(paramSpec.name, paramSpec
+                                .type
+                                .copy(nullable = paramSpec.nullable)
+                        )
+                    }
+
+
+
+                    funSpec.receiver(ClassName(pack, className))
+                            .apply { if (originatingElement != null) addOriginatingElement(originatingElement) }
+                            .returns(Boolean::class.java)
+                            .addModifiers(visibilityModifier)
+                            .addModifiers(KModifier.INLINE)
+                            .addStatement("return $selectedFunction(${annotation.parameters.joinToString { it.name }})")
+
+                    fileBuilder.addFunction(funSpec.build())
+
+                }
+            }
+        }
+
+
+        return fileBuilder.build()
+    }
+}
@@ -19,6 +19,7 @@ package name.wildswift.android.kanprocessor.generators
 import com.squareup.kotlinpoet.FunSpec
 import com.squareup.kotlinpoet.KModifier
 import com.squareup.kotlinpoet.PropertySpec
+import name.wildswift.android.kanprocessor.datahelpers.ChangeMask
 import name.wildswift.android.kanprocessor.datahelpers.PropertyData
 import name.wildswift.android.kanprocessor.datahelpers.ViewWithDelegateGenerationData
 import name.wildswift.android.kanprocessor.utils.bundleClass
@@ -40,12 +41,12 @@ object StateSerializationGenerator {
                     .addStatement("return result")
                     .build()
 
-    fun buildDeserializeStateMethod(data: ViewWithDelegateGenerationData, internalModelProperty: PropertySpec?, internalProperties: List<PropertyData>): FunSpec =
+    fun buildDeserializeStateMethod(data: ViewWithDelegateGenerationData, internalModelProperty: PropertySpec?, updateInternalModelFunction: FunSpec?, internalProperties: List<PropertyData>): FunSpec =
             FunSpec
                     .builder("setState")
                     .addModifiers(KModifier.PRIVATE)
                     .addParameter("state", bundleClass)
-                    .addStatement("%1N = %2T(", internalModelProperty!!, data.internalModelType)
+                    .addStatement("val restoredState = %T(", data.internalModelType)
                     .apply {
                         internalProperties
                                 .dropLast(1)
@@ -59,6 +60,7 @@ object StateSerializationGenerator {
                                 }
                     }
                     .addStatement(")")
+                    .addStatement("%1N(restoredState, restoredState.${ChangeMask.CHANGES_FUNCTION}(%2N))", updateInternalModelFunction!!, internalModelProperty!!)
                     .build()
 
 }
\ No newline at end of file
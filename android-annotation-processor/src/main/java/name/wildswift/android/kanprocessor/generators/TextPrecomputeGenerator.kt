@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.generators
+
+import com.squareup.kotlinpoet.*
+import com.squareup.kotlinpoet.ParameterizedTypeName.Companion.parameterizedBy
+import name.wildswift.android.kanprocessor.datahelpers.DelegateTypeResolver
+import name.wildswift.android.kanprocessor.datahelpers.ViewWithDelegateGenerationData
+import name.wildswift.android.kanprocessor.utils.*
+
+/**
+ * Generates members of view for fields with `precomputeText` flag. Text is measured on [backgroundExecutorClass] and cached in
+ * companion object per field, so it is shared by all views of class (for example, by all elements of list)
+ */
+object TextPrecomputeGenerator {
+    private const val CACHE_SIZE = 64
+
+    fun precomputedTextCaches(data: ViewWithDelegateGenerationData): Map<String, PropertySpec> {
+        val fields = data.basicFields.filter { it.precomputeText }
+        if (fields.isNotEmpty() && !data.rootAnnotation.generateViewDataObject) throw IllegalStateException("precomputeText requires generateViewDataObject in ${data.delegateType}")
+        return fields.associate {
+            it.name to PropertySpec.builder("${it.name}PrecomputedText", lruCacheClass.parameterizedBy(CHAR_SEQUENCE, precomputedTextCompatClass))
+                    .addModifiers(KModifier.PRIVATE)
+                    .initializer("%T($CACHE_SIZE)", lruCacheClass.parameterizedBy(CHAR_SEQUENCE, precomputedTextCompatClass))
+                    .build()
+        }
+    }
+
+    /**
+     * Precomputed text is used only if it was measured with the same parameters, that child has now
+     */
+    fun applyTextFunctions(data: ViewWithDelegateGenerationData, caches: Map<String, PropertySpec>, typeResolver: DelegateTypeResolver): List<FunSpec> =
+            data.basicFields.filter { it.precomputeText }.map { field ->
+                val value = ParameterSpec.builder("value", field.resolveType(typeResolver)).build()
+                FunSpec.builder("apply${field.name.capitalize()}Text")
+                        .addModifiers(KModifier.PRIVATE)
+                        .addParameter(value)
+                        .addStatement("if (%M(${field.childName}.text, %N)) return", MemberName("name.wildswift.android.kannotations.util", "isSameText"), value)
+                        .addStatement("val precomputed = %N.get(%N)", caches.getValue(field.name), value)
+                        .beginControlFlow("if (precomputed != null && precomputed.params == %T.getTextMetricsParams(${field.childName}))", textViewCompatClass)
+                        .addStatement("%T.setPrecomputedText(${field.childName}, precomputed)", textViewCompatClass)
+                        .nextControlFlow("else")
+                        .addStatement("${field.childName}.text = %N", value)
+                        .endControlFlow()
+                        .build()
+            }
+
+    fun precomputeTextFunction(data: ViewWithDelegateGenerationData, caches: Map<String, PropertySpec>): FunSpec {
+        val model = ParameterSpec.builder("model", data.externalModelType).build()
+        return FunSpec.builder("precomputeText")
+                .addParameter(model)
+                .apply {
+                    data.basicFields.filter { it.precomputeText }.forEach { field ->
+                        val cache = caches.getValue(field.name)
+                        addStatement("val ${field.name}Text = %N.${field.name}", model)
+                        beginControlFlow("if (%N.get(${field.name}Text) == null)", cache)
+                        addStatement("val ${field.name}Params = %T.getTextMetricsParams(${field.childName})", textViewCompatClass)
+                        addStatement("%T.execute·{·%N.put(${field.name}Text,·%T.create(${field.name}Text,·${field.name}Params))·}", backgroundExecutorClass, cache, precomputedTextCompatClass)
+                        endControlFlow()
+                    }
+                }
+                .build()
+    }
+}
@@ -0,0 +1,491 @@
+/*
+ * Copyright (C) 2020 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kanprocessor.generators
+
+import com.squareup.kotlinpoet.*
+import com.squareup.kotlinpoet.ParameterizedTypeName.Companion.parameterizedBy
+import name.wildswift.android.kannotations.DelegateIndexEntry
+import name.wildswift.android.kannotations.ListImplementation
+import name.wildswift.android.kannotations.OutputPropagation
+import name.wildswift.android.kannotations.ViewProperty
+import name.wildswift.android.kanprocessor.ProcessingEnvConstants
+import name.wildswift.android.kanprocessor.datahelpers.ChangeMask
+import name.wildswift.android.kanprocessor.datahelpers.DeferredOutputData
+import name.wildswift.android.kanprocessor.datahelpers.DelegateIndex
+import name.wildswift.android.kanprocessor.datahelpers.DelegateTypeResolver
+import name.wildswift.android.kanprocessor.datahelpers.ListFieldGenerationData
+import name.wildswift.android.kanprocessor.datahelpers.ListenerGenerationData
+import name.wildswift.android.kanprocessor.datahelpers.PropertyData
+import name.wildswift.android.kanprocessor.datahelpers.ViewFieldData
+import name.wildswift.android.kanprocessor.datahelpers.ViewModelData
+import name.wildswift.android.kanprocessor.datahelpers.ViewModelSnapshotGenerationData
+import name.wildswift.android.kanprocessor.datahelpers.ViewWithDelegateGenerationData
+import name.wildswift.android.kanprocessor.generators.DataClassGenerator.generateDataClass
+import name.wildswift.android.kanprocessor.generators.DelegatedMethodsGenerator.buildDelegatedMethods
+import name.wildswift.android.kanprocessor.generators.ListAdapterGenerator.buildOldAdapterClass
+import name.wildswift.android.kanprocessor.generators.ListAdapterGenerator.buildRecyclerAdapterClass
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.applyInputFunction
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.applyOutputFunction
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.applyWriteFunction
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.batchFunction
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.batchGenerationData
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.buildFieldsSpecs
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.buildListener
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.buildListenersSpecs
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.frameRenderGenerationData
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.currentValue
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.internalModelProperty
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.lifecycleListenersFunctions
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.lifecycleListenersGenerationData
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.mutableStateGenerationData
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.renderStateFunction
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.updateInternalModelFunction
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.visibilityGateGenerationData
+import name.wildswift.android.kanprocessor.generators.ModelPropertyGenerator.viewModelSnapshotGenerationData
+import name.wildswift.android.kanprocessor.generators.OutputPropagationGenerator.attachFunctions
+import name.wildswift.android.kanprocessor.generators.OutputPropagationGenerator.markPending
+import name.wildswift.android.kanprocessor.generators.OutputPropagationGenerator.outputPropagationFunctions
+import name.wildswift.android.kanprocessor.generators.OutputPropagationGenerator.outputPropagationGenerationData
+import name.wildswift.android.kanprocessor.generators.OutputPropagationGenerator.readChild
+import name.wildswift.android.kanprocessor.generators.StateSerializationGenerator.buildDeserializeStateMethod
+import name.wildswift.android.kanprocessor.generators.StateSerializationGenerator.buildSerializeStateMethod
+import name.wildswift.android.kanprocessor.generators.TextPrecomputeGenerator.applyTextFunctions
+import name.wildswift.android.kanprocessor.generators.TextPrecomputeGenerator.precomputeTextFunction
+import name.wildswift.android.kanprocessor.generators.TextPrecomputeGenerator.precomputedTextCaches
+import name.wildswift.android.kanprocessor.utils.*
+
+/**
+ * Builds view class with model classes for delegate. Used by both kapt and KSP processors
+ */
+object ViewClassGenerator {
+    fun buildViewFiles(data: ViewWithDelegateGenerationData, typeResolver: DelegateTypeResolver, envConstants: ProcessingEnvConstants) =
+            buildViewFiles(data, resolveModel(data, typeResolver), typeResolver, envConstants)
+
+    /**
+     * Resolves types and default values of view state properties. Field types may reference other delegates, so this is the only step,
+     * beside reading annotations, that looks up other classes
+     */
+    fun resolveModel(data: ViewWithDelegateGenerationData, typeResolver: DelegateTypeResolver): ViewModelData {
+        val basicProperties = data
+                .basicFields
+                .map {
+                    val (defaultValuePattern, defaultValueClass) = it.resolveDefaultValue(typeResolver)
+                    it to PropertyData(
+                            it.name,
+                            it.resolveType(typeResolver),
+                            defaultValuePattern,
+                            defaultValueClass
+                    )
+                }
+        val collectionProperties = data
+                .collectionFields
+                .map {
+                    it to PropertyData(
+                            it.name,
+                            itemsDSClass.parameterizedBy(it.getModelType(typeResolver)),
+                            "%T()",
+                            emptyIDSClass
+                    )
+                }
+
+        return ViewModelData(
+                internalProperties = basicProperties.map { it.second } + collectionProperties.map { it.second },
+                publicModelProperties = basicProperties.filter { it.first.rwType.public }.map { it.second } + collectionProperties.filter { it.first.rwType.public }.map { it.second },
+                publicMutableProperties = basicProperties.filter { it.first.rwType.mutablePublic }.map { it.second } + collectionProperties.filter { it.first.rwType.public }.map { it.second }
+        )
+    }
+
+    fun buildViewFiles(data: ViewWithDelegateGenerationData, model: ViewModelData, typeResolver: DelegateTypeResolver, envConstants: ProcessingEnvConstants): List<FileSpec> {
+        val delegateProperty = PropertySpec.builder("delegate", data.delegateType).addModifiers(KModifier.PRIVATE).initializer("%T(this)", data.delegateType).build()
+        val childrenUpdateProperty = PropertySpec.builder("childrenUpdate", BOOLEAN).addModifiers(KModifier.PRIVATE).mutable().initializer("false").build()
+
+        val internalProperties = model.internalProperties
+        val publicModelProperties = model.publicModelProperties
+        val publicMutableProperties = model.publicMutableProperties
+
+        val listFieldsGenerationData = data
+                .collectionFields
+                .map { listField ->
+                    val adapter = when (listField.listImplementation) {
+                        ListImplementation.ListView -> {
+                            buildOldAdapterClass(listField, typeResolver)
+                        }
+                        ListImplementation.RecyclerView -> {
+                            buildRecyclerAdapterClass(listField, typeResolver)
+                        }
+                    }
+                    ListFieldGenerationData(listField.name, listField.listImplementation, listField.childName, adapter)
+                }
+
+        val changeMask = ChangeMask(data.internalModelType, internalProperties)
+
+        val publicModelClass = if (data.rootAnnotation.generateViewDataObject) generateDataClass(data.externalModelType, publicModelProperties, data.originatingElement) else null
+        val internalModelClass = generateDataClass(data.internalModelType, internalProperties, data.originatingElement, changeMask)
+        val mutableState = internalModelClass
+                ?.takeIf { data.rootAnnotation.mutableState }
+                ?.let { mutableStateGenerationData(data, internalProperties, changeMask) }
+        val internalModelProperty = internalModelClass?.let { internalModelProperty(data, mutableState) }
+        val visibilityGates = internalModelProperty?.let { visibilityGateGenerationData(data, changeMask) }
+        val frameRender = internalModelProperty
+                ?.takeIf { data.rootAnnotation.coalesceFrameUpdates }
+                ?.let { frameRenderGenerationData(data, it, listFieldsGenerationData, childrenUpdateProperty, visibilityGates, mutableState, changeMask) }
+        val batch = internalModelProperty?.let { batchGenerationData(data, it, changeMask, publicModelClass != null, mutableState) }
+        val viewModelSnapshot = batch?.takeIf { publicModelClass != null }?.let { viewModelSnapshotGenerationData(data, publicModelProperties, it, mutableState) }
+        val renderStateFun = mutableState?.let { renderStateFunction(data, internalModelProperty!!, delegateProperty, listFieldsGenerationData, childrenUpdateProperty, frameRender, visibilityGates, viewModelSnapshot, it, changeMask) }
+        val updateInternalModelFun = internalModelProperty?.let { updateInternalModelFunction(data, it, delegateProperty, listFieldsGenerationData, childrenUpdateProperty, frameRender, visibilityGates, viewModelSnapshot, mutableState, renderStateFun, changeMask) }
+
+        val lifecycleListeners = batch?.takeIf { data.rootAnnotation.lifecycleAwareListeners }?.let { lifecycleListenersGenerationData(changeMask, publicModelClass != null) }
+        val listeners = buildListenersSpecs(data.basicFields, typeResolver, lifecycleListeners, changeMask).associateBy { it.name }
+
+        val onPublicModelChangedListener =
+                if (publicModelClass != null) {
+                    val defer = lifecycleListeners?.pendingViewModelProperty?.let { lifecycleListeners.deferDispatch(CodeBlock.of("%N = true", it)) }
+                    buildListener("viewModel", data.externalModelType, valueChangeListenerClass.parameterizedBy(data.externalModelType), defer)
+                } else {
+                    null
+                }
+        val lifecycleListenersFuns = lifecycleListeners?.let { lifecycleListenersFunctions(it, listeners.values, onPublicModelChangedListener, viewModelSnapshot, batch!!, mutableState, changeMask) }
+
+        val notifyChangedFun = publicModelProperties
+                .takeIf { it.isNotEmpty() }
+                ?.let { createNotifyChanged(listeners, data.internalModelType, it, onPublicModelChangedListener, viewModelSnapshot, changeMask) }
+
+        val applyInputFun = updateInternalModelFun?.let { applyInputFunction(data, internalModelProperty, delegateProperty, it, notifyChangedFun, listeners, batch!!, viewModelSnapshot, mutableState, changeMask) }
+        val applyWriteFun = mutableState?.let { applyWriteFunction(data, internalModelProperty!!, applyInputFun!!, renderStateFun!!, listeners, batch!!, viewModelSnapshot, it, changeMask) }
+        val applyOutputFun = updateInternalModelFun
+                ?.takeIf { data.basicFields.any { it.childName.isNotEmpty() && it.activeChild } }
+                ?.let { applyOutputFunction(data, internalModelProperty, delegateProperty, it, notifyChangedFun, changeMask) }
+        // Listener of active child with propagation policy only marks field as pending, and output is applied later
+        val outputPropagation = applyOutputFun?.let { outputPropagationGenerationData(data, changeMask) }
+
+        val publicModelProperty =
+                if (publicModelClass != null)
+                    PropertySpec
+                            .builder("viewModel", data.externalModelType)
+                            .getter(FunSpec.getterBuilder().addStatement("return %N()", viewModelSnapshot!!.snapshotFunction).build())
+                            .mutable()
+                            .setter(
+                                    FunSpec.setterBuilder()
+                                            .addParameter(ParameterSpec.builder("value", data.externalModelType).build())
+                                            .addStatement("var inputChanges = ${changeMask.zero}")
+                                            .apply {
+                                                publicMutableProperties.forEach {
+                                                    addStatement("if (%1L != value.${it.name}) inputChanges = inputChanges or %2L", currentValue(it.name, batch!!, mutableState), changeMask.bit(it.name))
+                                                }
+                                            }
+                                            .addStatement("if (inputChanges == ${changeMask.zero}) return")
+                                            .addStatement("%1N(%2N.copy(\n" +
+                                                    "⇥⇥${publicMutableProperties.joinToString { "${it.name} = value.${it.name}" }}\n" +
+                                                    "⇤⇤), inputChanges)", applyInputFun!!, batch.inputModelProperty ?: internalModelProperty!!)
+                                            .addStatement("if (%1N > 0) %2N = true else %3L", batch.depthProperty, batch.pendingViewModelProperty!!, onPublicModelChangedListener!!.notify(CodeBlock.of("value")))
+                                            .build()
+                            )
+                            .build()
+                else
+                    null
+
+        val saveStateMethod = if (data.basicFields.isNotEmpty() && data.rootAnnotation.saveInstanceState) buildSerializeStateMethod(internalProperties, internalModelProperty) else null
+        val restoreStateMethod = if (data.basicFields.isNotEmpty() && data.rootAnnotation.saveInstanceState) buildDeserializeStateMethod(data, internalModelProperty, updateInternalModelFun, internalProperties) else null
+
+        val viewClassSpec = TypeSpec
+                .classBuilder(data.generateViewType)
+                .apply { if (data.originatingElement != null) addOriginatingElement(data.originatingElement) }
+                .addModifiers(data.visibilityModifier)
+                .superclass(data.rootAnnotation.parent)
+                .addViewConstructors {
+                    if (data.attrs.isNotEmpty() && it > 1) {
+                        addStatement("setAttrs(context, attrs)")
+                    }
+                    this
+                }
+                .addProperty(delegateProperty)
+                .addProperty(childrenUpdateProperty)
+                .apply {
+                    if (mutableState != null) addProperties(mutableState.properties)
+                    if (internalModelProperty != null) addProperty(internalModelProperty)
+                    if (batch != null) addProperties(batch.properties)
+                    if (viewModelSnapshot != null) addProperty(viewModelSnapshot.snapshotProperty)
+                    if (frameRender != null) addProperties(frameRender.properties)
+                    if (visibilityGates != null) addProperty(visibilityGates.pendingChangesProperty)
+                    if (lifecycleListeners != null) addProperties(lifecycleListeners.properties)
+                    if (outputPropagation != null) addProperties(outputPropagation.properties)
+                    if (publicModelProperty != null) addProperty(publicModelProperty)
+                    if (onPublicModelChangedListener != null) addProperties(onPublicModelChangedListener.properties)
+                }
+
+
+        val fieldsProperties = internalModelProperty?.let { buildFieldsSpecs(data, listeners, applyInputFun!!, applyWriteFun, batch!!, mutableState, changeMask, typeResolver) }
+                ?: listOf()
+
+        fieldsProperties.forEach { field ->
+            viewClassSpec.addProperty(field.readWriteProperty)
+            field.listener?.apply {
+                viewClassSpec.addProperties(properties)
+            }
+        }
+
+        data.events.forEach {
+            PropertySpec
+                    .builder(it.name, LambdaTypeName.get(returnType = Unit::class.asTypeName()).copy(nullable = true))
+                    .mutable()
+                    .initializer("null")
+                    .build()
+                    .apply {
+                        viewClassSpec.addProperty(this)
+                    }
+        }
+
+        viewClassSpec
+                .addProperties(data.collectionFields.flatMap { collectionField ->
+                    collectionField
+                            .elementEvents
+                            .map {
+                                PropertySpec.builder(it.name, LambdaTypeName.get(null, listOf(ParameterSpec.unnamed(collectionField.getModelType(typeResolver))), UNIT).copy(nullable = true)).mutable().initializer("null").build()
+                            }
+
+                }
+                )
+
+        val deferredOutputs = mutableListOf<DeferredOutputData>()
+        val outputBody = { group: List<ViewFieldData>, child: String, body: CodeBlock ->
+            val field = group.first()
+            if (outputPropagation == null || field.propagation == OutputPropagation.Immediate) {
+                body
+            } else {
+                deferredOutputs += DeferredOutputData(field, readChild(group, child), body)
+                markPending(outputPropagation, field, childrenUpdateProperty, changeMask)
+            }
+        }
+
+        viewClassSpec.addInitializerBlock(
+                CodeBlock.builder()
+                        .also {
+                            if (data.layoutName.isNotEmpty()) {
+                                it.addStatement("inflate(context, R.layout.${data.layoutName}, this)")
+                            }
+                        }
+                        .addStatement("%1N.setupView()", delegateProperty)
+                        .also { codeBlockBuilder ->
+                            data.events
+                                    .filter { event -> event.childName.isNotBlank() }
+                                    .forEach { event ->
+                                        codeBlockBuilder.add("${event.childName}.${event.resolveListener("${event.name}?.invoke()")}")
+                                    }
+                        }
+                        .also { codeBlockBuilder ->
+                            data.basicFields
+                                    .filter { it.childName.isNotEmpty() }
+                                    .filter { it.activeChild }
+                                    .groupBy { it.childName }
+                                    .forEach { (child, value) ->
+                                        var propertiesList = value
+                                        while (propertiesList.isNotEmpty()) {
+                                            val viewField = propertiesList[0]
+                                            when {
+                                                viewField.byProperty != ViewProperty.none -> {
+                                                    val listenerGroup = viewField.byProperty.getListenerGroup()
+                                                    if (listenerGroup.isEmpty()) throw throw IllegalStateException("ViewProperty.${viewField.byProperty} not supports activeChild flag")
+                                                    listenerGroup.mapNotNull { property -> propertiesList.find { it.byProperty == property } }
+                                                            .let { viewFields ->
+                                                                val inputChanges = if (viewFields.size == 1) {
+                                                                    changeMask.bit(viewFields[0].name)
+                                                                } else {
+                                                                    viewFields.map { CodeBlock.of("(if (%1N.${it.name} != ${it.byProperty.getListenerPropertyName()}) %2L else ${changeMask.zero})", internalModelProperty!!, changeMask.bit(it.name)) }.joinToCode(" or ")
+                                                                }
+                                                                val body = CodeBlock.of("""
+                                                                    |    if ((%5L) && !%2N) {
+                                                                    |        %3N(
+                                                                    |                %1N.copy(
+                                                                    |%6L
+                                                                    |                ),
+                                                                    |                %4L
+                                                                    |        )
+                                                                    |    }
+                                                                    |
+                                                                """.trimMargin(),
+                                                                        internalModelProperty!!,
+                                                                        childrenUpdateProperty,
+                                                                        applyOutputFun!!,
+                                                                        inputChanges,
+                                                                        viewFields.map { it.listenerValueChanged(internalModelProperty) }.joinToCode(" || "),
+                                                                        viewFields.map { CodeBlock.of("                    ${it.name} = %L", it.listenerValue()) }.joinToCode(",\n")
+                                                                )
+                                                                outputBody(viewFields, child, body)
+                                                            }
+                                                            .also { listenerGroup.first().buildListener(child, it, codeBlockBuilder) }
+
+                                                    propertiesList = propertiesList.filter { !listenerGroup.contains(it.byProperty) }
+                                                }
+                                                viewField.byDelegate != null -> {
+                                                    val body = CodeBlock.of("""
+                                                            |    if (%1N.${viewField.name} != newValue && !%2N) {
+                                                            |        %3N(%1N.copy(${viewField.name} = newValue), %4L)
+                                                            |    }
+                                                            |
+                                                        """.trimMargin(), internalModelProperty!!, childrenUpdateProperty, applyOutputFun!!, changeMask.bit(viewField.name))
+                                                    codeBlockBuilder.add("$child.onViewModelChanged = { newValue ->\n%L}\n", outputBody(listOf(viewField), child, body))
+                                                    propertiesList = propertiesList.drop(1)
+                                                }
+                                                else -> {
+                                                    val body = CodeBlock.of("""
+                                                            |    if (%1N.${viewField.name} != newValue && !%2N) {
+                                                            |        %3N(%1N.copy(${viewField.name} = newValue), %4L)
+                                                            |    }
+                                                            |
+                                                        """.trimMargin(), internalModelProperty!!, childrenUpdateProperty, applyOutputFun!!, changeMask.bit(viewField.name))
+                                                    codeBlockBuilder.add("$child.${viewField.childPropertyListener} = { ${viewField.childPropertyListenerParams} ->\n%L}\n", outputBody(listOf(viewField), child, body))
+                                                    propertiesList = propertiesList.drop(1)
+                                                }
+                                            }
+                                        }
+                                    }
+
+                        }
+                        .build()
+        )
+
+
+        if (data.attrs.isNotEmpty()) {
+            val setAttrsFun = FunSpec
+                    .builder("setAttrs")
+                    .addModifiers(KModifier.PRIVATE)
+                    .addParameter("context", contextClass)
+                    .addParameter("attrs", ClassName("android.util", "AttributeSet").copy(nullable = true))
+                    .addStatement("if (attrs == null) return")
+                    .addStatement("val styleAttrs = context.obtainStyledAttributes(attrs, R.styleable.${data.generateViewType.simpleName})")
+
+            data.attrs.forEach {
+                val propertyName = if (it.fieldName.isBlank()) it.reference else it.fieldName
+                if (data.basicFields.find { it.rwType.public && it.name == propertyName } == null) {
+                    viewClassSpec.addProperty(PropertySpec
+                            .builder(propertyName, it.type.fieldClass())
+                            .mutable()
+                            .initializer(it.type.initValue())
+                            .build()
+                    )
+                }
+
+                setAttrsFun.addStatement("$propertyName = styleAttrs.${it.type.loadCode("R.styleable.${data.generateViewType.simpleName}_${it.reference}")}")
+            }
+
+            setAttrsFun.addStatement("styleAttrs.recycle()")
+            viewClassSpec.addFunction(setAttrsFun.build())
+
+        }
+
+        if (outputPropagation != null) {
+            attachFunctions(outputPropagation, delegateProperty).forEach { viewClassSpec.addFunction(it) }
+        } else {
+            viewClassSpec
+                    .delegateCall("onAttachedToWindow", delegateProperty, "onShow")
+                    .delegateCall("onDetachedFromWindow", delegateProperty, "onHide")
+        }
+
+        saveStateMethod?.apply {
+            viewClassSpec.addFunction(this)
+            viewClassSpec.generateViewSave(this)
+        }
+
+        restoreStateMethod?.apply {
+            viewClassSpec.addFunction(this)
+            viewClassSpec.generateViewRestore(this)
+        }
+
+        val batchFun = applyInputFun?.let { batchFunction(data, internalModelProperty!!, it, applyWriteFun, mutableState, batch!!, changeMask, viewModelSnapshot, onPublicModelChangedListener) }
+
+        listOfNotNull(batchFun, updateInternalModelFun, renderStateFun, frameRender?.renderFunction, viewModelSnapshot?.snapshotFunction, applyInputFun, applyWriteFun, applyOutputFun, notifyChangedFun).forEach { viewClassSpec.addFunction(it) }
+        (listOfNotNull(onPublicModelChangedListener) + fieldsProperties.mapNotNull { it.listener }).flatMap { it.functions }.forEach { viewClassSpec.addFunction(it) }
+        lifecycleListenersFuns?.forEach { viewClassSpec.addFunction(it) }
+        outputPropagation?.let { outputPropagationFunctions(it, deferredOutputs, changeMask) }?.forEach { viewClassSpec.addFunction(it) }
+
+        val precomputedTextCaches = precomputedTextCaches(data)
+        if (precomputedTextCaches.isNotEmpty()) {
+            viewClassSpec.addType(TypeSpec.companionObjectBuilder().addProperties(precomputedTextCaches.values).build())
+            applyTextFunctions(data, precomputedTextCaches, typeResolver).forEach { viewClassSpec.addFunction(it) }
+            viewClassSpec.addFunction(precomputeTextFunction(data, precomputedTextCaches))
+        }
+
+        buildDelegatedMethods(data.delegatedMethods, delegateProperty).forEach { viewClassSpec.addFunction(it) }
+
+
+        listFieldsGenerationData
+                .forEach { (_, _, _, adapter) ->
+                    viewClassSpec.addType(adapter)
+                }
+
+        val viewFile = FileSpec
+                .builder(data.generateViewType.packageName, data.generateViewType.simpleNames.first())
+                .addImport(envConstants.appId, "R")
+                .addImport(viewClass, "inflate")
+                .also {
+                    if (data.layoutName.isNotEmpty()) {
+                        it.addImport("kotlinx.android.synthetic.main.${data.layoutName}.view", data.basicFields.mapNotNull { it.childName.takeIf { it.isNotBlank() && it != "this" } } + data.events.mapNotNull { it.childName.takeIf { it.isNotBlank() && it != "this" } } + data.collectionFields.mapNotNull { it.childName.takeIf { it.isNotBlank() && it != "this" } })
+                    }
+                }
+                .addImport("name.wildswift.android.kannotations.util", "put")
+                .also {
+                    val textFields = data.basicFields.filter { field -> field.byProperty == ViewProperty.text && field.childName.isNotEmpty() }
+                    if (textFields.any { field -> !field.minimalTextEdit && !field.precomputeText }) it.addImport("name.wildswift.android.kannotations.util", "isSameText")
+                    if (textFields.any { field -> field.minimalTextEdit }) it.addImport("name.wildswift.android.kannotations.util", "applyTextEdit")
+                    val asyncDrawableFields = data.basicFields.filter { field -> field.asyncDrawable && field.childName.isNotEmpty() }
+                    if (asyncDrawableFields.any { field -> field.byProperty == ViewProperty.imageResource }) it.addImport("name.wildswift.android.kannotations.util", "loadImageResourceAsync")
+                    if (asyncDrawableFields.any { field -> field.byProperty == ViewProperty.backgroundResource }) it.addImport("name.wildswift.android.kannotations.util", "loadBackgroundResourceAsync")
+                }
+                .addType(viewClassSpec.build())
+                .build()
+
+        return listOfNotNull(
+                publicModelClass?.let { FileSpec.get(data.externalModelType.packageName, it) },
+                internalModelClass?.let { FileSpec.get(data.internalModelType.packageName, it) },
+                viewFile,
+                buildIndexEntryFile(data)
+        )
+    }
+
+    private fun buildIndexEntryFile(data: ViewWithDelegateGenerationData): FileSpec {
+        val entryType = DelegateIndex.entryType(data.delegateType)
+        return FileSpec.get(entryType.packageName, TypeSpec.objectBuilder(entryType)
+                .apply { if (data.originatingElement != null) addOriginatingElement(data.originatingElement) }
+                .addAnnotation(AnnotationSpec.builder(DelegateIndexEntry::class).addMember("%S", DelegateIndex.encode(data.generatedTypes)).build())
+                .build())
+    }
+
+
+    private fun createNotifyChanged(methodsMapping: Map<String, ListenerGenerationData>, internalModelType: ClassName, publicFields: List<PropertyData>, publicModelChangedListener: ListenerGenerationData?, viewModelSnapshot: ViewModelSnapshotGenerationData?, changeMask: ChangeMask): FunSpec {
+        val notifyChangedOldModel = ParameterSpec.builder("oldModel", internalModelType).build()
+        val notifyChangedCurrentModel = ParameterSpec.builder("currentModel", internalModelType).build()
+        val notifyChangedChanges = ParameterSpec.builder("changes", changeMask.type).build()
+        val notifyChangedFunBuilder = FunSpec
+                .builder("notifyChanged")
+                .addModifiers(KModifier.PRIVATE)
+                .addParameter(notifyChangedOldModel)
+                .addParameter(notifyChangedCurrentModel)
+                .addParameter(notifyChangedChanges)
+                .addStatement("if (%N == ${changeMask.zero}) return", notifyChangedChanges)
+                .apply {
+                    // Current model is already applied, so snapshot is built from it
+                    if (publicModelChangedListener != null && viewModelSnapshot != null) {
+                        addStatement("if (%1L) %2L", changeMask.isAnyChanged(publicFields.map { it.name }, "changes", "oldModel", "currentModel"), publicModelChangedListener.notify(CodeBlock.of("%N()", viewModelSnapshot.snapshotFunction)))
+                    }
+                }
+
+        methodsMapping.forEach { (name, listener) ->
+            notifyChangedFunBuilder.addStatement("if (%1L) %2L", changeMask.isChanged(name, "changes", "oldModel", "currentModel"), listener.notify(CodeBlock.of("%N.$name", notifyChangedCurrentModel)))
+        }
+        return notifyChangedFunBuilder.build()
+    }
+}
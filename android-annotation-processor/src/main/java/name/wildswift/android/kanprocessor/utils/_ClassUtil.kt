@@ -26,29 +26,16 @@ import kotlinx.metadata.jvm.KotlinClassHeader
 import kotlinx.metadata.jvm.KotlinClassMetadata
 import javax.lang.model.element.AnnotationValue
 import javax.lang.model.element.TypeElement
-import javax.lang.model.type.MirroredTypeException
+import javax.lang.model.type.TypeMirror
 import javax.lang.model.util.SimpleAnnotationValueVisitor7
-import kotlin.reflect.KClass
 
 /**
  * Created by swift
  */
-fun <T : Annotation> T.safeGetType(run: T.() -> KClass<*>) =
-        try {
-            this.run().asTypeName()
-        } catch (mte: MirroredTypeException) {
-            mte.typeMirror.asTypeName()
-        }
+fun TypeMirror.asKotlinTypeName() =
+        asTypeName()
                 .let { if (it is ClassName && it.canonicalName == "java.lang.String") String::class.asTypeName() else it }
 
-fun <T : Annotation> T.checkIsVoid(run: T.() -> KClass<*>) =
-        try {
-            this.run().asTypeName()
-        } catch (mte: MirroredTypeException) {
-            mte.typeMirror.asTypeName()
-        }
-                .let { (it is ClassName && it.canonicalName == "java.lang.Void") }
-
 fun TypeName.bundleStoreMethod(key: String, value: String) = when {
     this == Byte::class.asTypeName() -> "putByte(\"$key\", $value)"
     this == Char::class.asTypeName() -> "putChar(\"$key\", $value)"
@@ -16,13 +16,13 @@
 
 package name.wildswift.android.kanprocessor.utils
 
-import name.wildswift.android.kannotations.ListEvent
 import name.wildswift.android.kannotations.ViewListener
+import name.wildswift.android.kanprocessor.datahelpers.ListEventData
 
 /**
  * Created by swift
  */
-fun ListEvent.resolveListener(statement: String) =
+fun ListEventData.resolveListener(statement: String) =
         if (listener != ViewListener.none) {
             when (listener) {
                 ViewListener.none -> ""
@@ -49,7 +49,7 @@ fun ListEvent.resolveListener(statement: String) =
             """.trimMargin()
         }
 
-fun ListEvent.validateCorrectSetup(): Boolean {
+fun ListEventData.validateCorrectSetup(): Boolean {
     if (listener == ViewListener.none && listenerName.isEmpty()) return false
 
     return true;
@@ -16,34 +16,42 @@
 
 package name.wildswift.android.kanprocessor.utils
 
-import com.squareup.kotlinpoet.ClassName
 import com.squareup.kotlinpoet.TypeName
-import name.wildswift.android.kannotations.CollectionViewField
-import name.wildswift.android.kanprocessor.datahelpers.ViewWithDelegateGenerationData
+import name.wildswift.android.kanprocessor.datahelpers.CollectionViewFieldData
+import name.wildswift.android.kanprocessor.datahelpers.DelegateTypeResolver
 
 /**
  * Created by swift
  */
-fun CollectionViewField.validateCorrectSetup(): Boolean {
-    if (childName.isNotEmpty() && checkIsVoid { byDelegate } && checkIsVoid { type }) return false
+fun CollectionViewFieldData.validateCorrectSetup(): Boolean {
+    if (childName.isNotEmpty() && byDelegate == null && type == null) return false
+    if (precomputeTextDistance > 0 && byDelegate == null) return false
 
     return true
 }
 
-fun CollectionViewField.getModelType(typeMapping: Map<String, ViewWithDelegateGenerationData>): TypeName {
-    if (!checkIsVoid { byDelegate }) return typeMapping[(safeGetType { byDelegate } as? ClassName)?.canonicalName]?.externalModelType
-            ?: throw IllegalStateException("Can't find model for delegate ${safeGetType { byDelegate }}")
-    return safeGetType { type }
+/**
+ * Element view has `precomputeText` function only if its delegate has field with `precomputeText` flag
+ */
+fun CollectionViewFieldData.validatePrecomputeText(typeResolver: DelegateTypeResolver) {
+    if (precomputeTextDistance <= 0 || byDelegate == null) return
+    if (typeResolver[byDelegate.canonicalName]?.precomputesText != true) throw IllegalStateException("precomputeTextDistance of list field $name requires ViewField with precomputeText flag in $byDelegate")
+}
+
+fun CollectionViewFieldData.getModelType(typeResolver: DelegateTypeResolver): TypeName {
+    if (byDelegate != null) return typeResolver[byDelegate.canonicalName]?.externalModelType
+            ?: throw IllegalStateException("Can't find model for delegate $byDelegate")
+    return type ?: throw IllegalStateException("Type not specified for collection field $name")
 }
 
-fun CollectionViewField.getAdapterViewType(typeMapping: Map<String, ViewWithDelegateGenerationData>): TypeName {
-    if (!checkIsVoid { byDelegate }) return typeMapping[(safeGetType { byDelegate } as? ClassName)?.canonicalName]?.generateViewType
-            ?: throw IllegalStateException("Can't find model for delegate ${safeGetType { byDelegate }}")
-    return safeGetType { viewForElementClass }
+fun CollectionViewFieldData.getAdapterViewType(typeResolver: DelegateTypeResolver): TypeName {
+    if (byDelegate != null) return typeResolver[byDelegate.canonicalName]?.generateViewType
+            ?: throw IllegalStateException("Can't find model for delegate $byDelegate")
+    return viewForElementClass
 }
 
-fun CollectionViewField.buildSetViewModelStatement(typeMapping: Map<String, ViewWithDelegateGenerationData>, value: String): String {
-    if (!checkIsVoid { byDelegate }) return "viewModel·=·$value"
+fun CollectionViewFieldData.buildSetViewModelStatement(typeResolver: DelegateTypeResolver, value: String): String {
+    if (byDelegate != null) return "viewModel·=·$value"
     if (childPropertySetter.isNotEmpty()) return "$childPropertySetter($value)"
     return "${childPropertyName}·=·$value"
 }
\ No newline at end of file
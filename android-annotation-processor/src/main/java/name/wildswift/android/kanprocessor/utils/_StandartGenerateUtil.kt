@@ -49,15 +49,34 @@ fun TypeSpec.Builder.addViewConstructors(additionalCalls: FunSpec.Builder.(Int)
 
 val contextClass = ClassName("android.content", "Context")
 val viewClass = ClassName("android.view", "View")
+val focusChangeListenerClass = ClassName("android.view", "ViewTreeObserver", "OnGlobalFocusChangeListener")
 val viewGroupClass = ClassName("android.view", "ViewGroup")
+val choreographerClass = ClassName("android.view", "Choreographer")
+val systemClockClass = ClassName("android.os", "SystemClock")
+val lruCacheClass = ClassName("android.util", "LruCache")
+val precomputedTextCompatClass = ClassName("androidx.core.text", "PrecomputedTextCompat")
+val textViewCompatClass = ClassName("androidx.core.widget", "TextViewCompat")
+val backgroundExecutorClass = ClassName("name.wildswift.android.kannotations.util", "BackgroundExecutor")
+val lifecycleClass = ClassName("androidx.lifecycle", "Lifecycle")
+val lifecycleOwnerClass = ClassName("androidx.lifecycle", "LifecycleOwner")
+val lifecycleEventObserverClass = ClassName("androidx.lifecycle", "LifecycleEventObserver")
 val parcelableClass = ClassName("android.os", "Parcelable")
 val bundleClass = ClassName("android.os", "Bundle")
 val drawableClass = ClassName("android.graphics.drawable", "Drawable")
 val textWatcherClass = ClassName("android.text", "TextWatcher")
 val editableClass = ClassName("android.text", "Editable")
+val textUtilsClass = ClassName("android.text", "TextUtils")
+val spannedClass = ClassName("android.text", "Spanned")
+val spannableClass = ClassName("android.text", "Spannable")
+val spannedStringClass = ClassName("android.text", "SpannedString")
+val spannableStringClass = ClassName("android.text", "SpannableString")
 val itemsDSClass = ClassName("name.wildswift.android.kannotations.interfaces", "ItemsDataSource")
 val emptyIDSClass = ClassName("name.wildswift.android.kannotations.interfaces", "EmptyItemsDataSource")
 val itemsObserverClass = ClassName("name.wildswift.android.kannotations.interfaces", "ItemsObserver")
+val listenerRegistryClass = ClassName("name.wildswift.android.kannotations.util", "ListenerRegistry")
+val valueChangeListenerClass = ClassName("name.wildswift.android.kannotations.interfaces", "ValueChangeListener")
+val primitiveChangeListenerClasses = listOf(INT, LONG, FLOAT, DOUBLE, BOOLEAN)
+        .associateWith { ClassName("name.wildswift.android.kannotations.interfaces", "${it.simpleName}ChangeListener") }
 val baseAdapterClass = ClassName("android.widget", "BaseAdapter")
 val dataSetObserverClass = ClassName("android.database", "DataSetObserver")
 val recyclerAdapterClass = ClassName("androidx.recyclerview.widget", "RecyclerView", "Adapter")
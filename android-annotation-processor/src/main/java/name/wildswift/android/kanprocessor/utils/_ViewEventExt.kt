@@ -16,13 +16,13 @@
 
 package name.wildswift.android.kanprocessor.utils
 
-import name.wildswift.android.kannotations.ViewEvent
 import name.wildswift.android.kannotations.ViewListener
+import name.wildswift.android.kanprocessor.datahelpers.ViewEventData
 
 /**
  * Created by swift
  */
-fun ViewEvent.resolveListener(statement: String) =
+fun ViewEventData.resolveListener(statement: String) =
         if (listener != ViewListener.none) {
             when (listener) {
                 ViewListener.none -> ""
@@ -49,7 +49,7 @@ fun ViewEvent.resolveListener(statement: String) =
             """.trimMargin()
         }
 
-fun ViewEvent.validateCorrectSetup(): Boolean {
+fun ViewEventData.validateCorrectSetup(): Boolean {
     if (childName.isNotBlank() && listener == ViewListener.none && listenerName.isEmpty()) return false
 
     return true;
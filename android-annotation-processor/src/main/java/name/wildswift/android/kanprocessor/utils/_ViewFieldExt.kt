@@ -17,27 +17,29 @@
 package name.wildswift.android.kanprocessor.utils
 
 import com.squareup.kotlinpoet.*
-import name.wildswift.android.kannotations.ViewField
 import name.wildswift.android.kannotations.ViewProperty
-import name.wildswift.android.kanprocessor.datahelpers.ViewWithDelegateGenerationData
+import name.wildswift.android.kanprocessor.datahelpers.DelegateTypeResolver
+import name.wildswift.android.kanprocessor.datahelpers.ViewFieldData
 import java.util.*
-import javax.lang.model.element.ElementKind
-import javax.lang.model.util.Elements
 
 /**
  * Created by swift
  */
-fun ViewField.validateCorrectSetup(elements: Elements): Boolean {
-    if (byProperty == ViewProperty.none && checkIsVoid { type } && checkIsVoid { byDelegate }) return false
-    if (checkIsVoid { byDelegate } && (resolveDefaultValue(mapOf(), elements).first).isEmpty()) return false
-    if (byProperty == ViewProperty.none && checkIsVoid { byDelegate } && childName.isNotEmpty() && childPropertyName.isEmpty() && childPropertySetter.isEmpty()) return false
+fun ViewFieldData.validateCorrectSetup(): Boolean {
+    if (byProperty == ViewProperty.none && type == null && byDelegate == null) return false
+    if (byDelegate == null && (if (byProperty != ViewProperty.none) byProperty.getDefaultValue() else resolveCustomTypeDefaultValue()).first.isEmpty()) return false
+    if (byProperty == ViewProperty.none && byDelegate == null && childName.isNotEmpty() && childPropertyName.isEmpty() && childPropertySetter.isEmpty()) return false
+    if (minimalTextEdit && byProperty != ViewProperty.text) return false
+    if (precomputeText && (byProperty != ViewProperty.text || minimalTextEdit || childName.isEmpty() || !rwType.public)) return false
+    if (asyncDrawable && byProperty != ViewProperty.imageResource && byProperty != ViewProperty.backgroundResource) return false
+    if (gatedBy == name) return false
 
     return true
 }
 
-fun ViewField.resolveType(typeMapping: Map<String, ViewWithDelegateGenerationData>) =
+fun ViewFieldData.resolveType(typeResolver: DelegateTypeResolver) =
         when {
-            byProperty == ViewProperty.text -> STRING
+            byProperty == ViewProperty.text -> resolveTextType()
             byProperty == ViewProperty.visibility -> INT
             byProperty == ViewProperty.textColor -> INT
             byProperty == ViewProperty.checked -> BOOLEAN
@@ -53,27 +55,66 @@ fun ViewField.resolveType(typeMapping: Map<String, ViewWithDelegateGenerationDat
             byProperty == ViewProperty.enable -> BOOLEAN
             byProperty == ViewProperty.selected -> BOOLEAN
             byProperty == ViewProperty.elevation -> FLOAT
-            !checkIsVoid { byDelegate } -> typeMapping[(safeGetType { byDelegate } as? ClassName)?.canonicalName]?.externalModelType
-                    ?: throw IllegalStateException("Can't find model for delegate ${safeGetType { byDelegate }}")
-            else -> safeGetType { type }
+            byDelegate != null -> typeResolver[byDelegate.canonicalName]?.externalModelType
+                    ?: throw IllegalStateException("Can't find model for delegate $byDelegate")
+            else -> type ?: throw IllegalStateException("Type not specified for field $name")
         }
 
-fun ViewField.resolveDefaultValue(typeMapping: Map<String, ViewWithDelegateGenerationData>, elements: Elements): Pair<String, TypeName?> {
+/**
+ * Text may be kept as `String` (default), `CharSequence`, `Spanned` or `Spannable`
+ */
+private fun ViewFieldData.resolveTextType(): TypeName {
+    val type = type ?: return STRING
+    return when ((type as? ClassName)?.canonicalName) {
+        String::class.qualifiedName, "java.lang.String" -> STRING
+        CharSequence::class.qualifiedName, "java.lang.CharSequence" -> CHAR_SEQUENCE
+        spannedClass.canonicalName -> spannedClass
+        spannableClass.canonicalName -> spannableClass
+        else -> throw IllegalStateException("ViewProperty.text supports only String, CharSequence, Spanned or Spannable type. Field $name has type $type")
+    }
+}
+
+/**
+ * Code that checks if value of active child differs from field of [model]. Text is compared by content, so string is not created
+ */
+fun ViewFieldData.listenerValueChanged(model: PropertySpec): CodeBlock =
+        if (byProperty == ViewProperty.text) CodeBlock.of("!%T.equals(%N.$name, text)", textUtilsClass, model)
+        else CodeBlock.of("%N.$name != ${byProperty.getListenerPropertyName()}", model)
+
+/**
+ * Value of active child, that is stored to field. Text of view is mutable, so it is copied with spans for non string fields
+ */
+fun ViewFieldData.listenerValue(): CodeBlock =
+        if (byProperty != ViewProperty.text) CodeBlock.of(byProperty.getListenerPropertyName())
+        else when (resolveTextType()) {
+            STRING -> CodeBlock.of("text.toString()")
+            spannableClass -> CodeBlock.of("%T(text)", spannableStringClass)
+            else -> CodeBlock.of("%T(text)", spannedStringClass)
+        }
+
+fun ViewFieldData.resolveDefaultValue(typeResolver: DelegateTypeResolver): Pair<String, TypeName?> {
+    if (byProperty == ViewProperty.text) {
+        return when (resolveTextType()) {
+            spannedClass -> "%T(\"\")" to spannedStringClass
+            spannableClass -> "%T(\"\")" to spannableStringClass
+            else -> byProperty.getDefaultValue()
+        }
+    }
     if (byProperty != ViewProperty.none) return byProperty.getDefaultValue()
-    if (!checkIsVoid { byDelegate }) return "%T()" to (typeMapping[(safeGetType { byDelegate } as? ClassName)?.canonicalName]?.externalModelType
-            ?: throw IllegalStateException("Can't find model for delegate ${safeGetType { byDelegate }}"))
+    if (byDelegate != null) {
+        val delegateTypes = typeResolver[byDelegate.canonicalName]
+                ?: throw IllegalStateException("Can't find model for delegate $byDelegate")
+        if (!delegateTypes.modelDefaultConstructor) throw IllegalStateException("Model of delegate $byDelegate is not generated. Set generateViewDataObject for it")
+        return "%T()" to delegateTypes.externalModelType
+    }
+    return resolveCustomTypeDefaultValue()
+}
+
+private fun ViewFieldData.resolveCustomTypeDefaultValue(): Pair<String, TypeName?> {
     if (defaultValue.isNotBlank()) return defaultValue to null
-    val type = safeGetType { type }
+    val type = type
     if (type !is ClassName) return defaultValue to null
-    val typeElement = elements.getTypeElement(type.canonicalName)
-    if (typeElement?.kind == ElementKind.ENUM) {
-        typeElement.enclosedElements
-                .firstOrNull { it.kind == ElementKind.ENUM_CONSTANT }
-                ?.simpleName
-                ?.also {
-                    return "%T.$it" to type
-                }
-    }
+    if (firstEnumConstant != null) return "%T.$firstEnumConstant" to type
     return when (type.canonicalName) {
         Boolean::class.qualifiedName -> "false" to null
         Float::class.qualifiedName -> "0.0f" to null
@@ -88,16 +129,20 @@ fun ViewField.resolveDefaultValue(typeMapping: Map<String, ViewWithDelegateGener
     }
 }
 
-fun ViewField.resolveSetter(childName: String, field: String) =
+fun ViewFieldData.resolveSetter(childName: String, field: String) =
         when {
-            byProperty == ViewProperty.text -> "$childName.apply·{·if·(text.toString()·!=·$field)·setText($field)·}"
+            byProperty == ViewProperty.text && minimalTextEdit -> "applyTextEdit($childName,·$field)"
+            byProperty == ViewProperty.text && precomputeText -> "apply${name.capitalize()}Text($field)"
+            byProperty == ViewProperty.text -> "$childName.apply·{·if·(!isSameText(text,·$field))·setText($field)·}"
             byProperty == ViewProperty.visibility -> "$childName.visibility·=·$field"
             byProperty == ViewProperty.textColor -> "$childName.setTextColor($field)"
             byProperty == ViewProperty.checked -> "$childName.isChecked·=·$field"
             byProperty == ViewProperty.timePickerHour -> "$childName.hour·=·$field"
             byProperty == ViewProperty.timePickerMinute -> "$childName.minute·=·$field"
+            byProperty == ViewProperty.imageResource && asyncDrawable -> "loadImageResourceAsync($childName,·$field)"
             byProperty == ViewProperty.imageResource -> "$childName.setImageResource($field)"
             byProperty == ViewProperty.imageDrawable -> "$childName.setImageDrawable($field)"
+            byProperty == ViewProperty.backgroundResource && asyncDrawable -> "loadBackgroundResourceAsync($childName,·$field)"
             byProperty == ViewProperty.backgroundResource -> "$childName.setBackgroundResource($field)"
             byProperty == ViewProperty.backgroundColor -> "$childName.setBackgroundColor($field)"
             byProperty == ViewProperty.backgroundDrawable -> "$childName.setBackground($field)"
@@ -106,7 +151,7 @@ fun ViewField.resolveSetter(childName: String, field: String) =
             byProperty == ViewProperty.enable -> "$childName.isEnabled·=·$field"
             byProperty == ViewProperty.selected -> "$childName.isSelected·=·$field"
             byProperty == ViewProperty.elevation -> "if·(android.os.Build.VERSION.SDK_INT·>=·21)·$childName.elevation·=·$field"
-            !checkIsVoid { byDelegate } -> "$childName.viewModel·=·$field"
+            byDelegate != null -> "$childName.viewModel·=·$field"
             childPropertyName.isNotEmpty() -> "$childName.$childPropertyName·=·$field"
             else -> "$childName.$childPropertySetter($field)"
         }
@@ -17,8 +17,6 @@
 package name.wildswift.android.kanprocessor.utils
 
 import com.squareup.kotlinpoet.CodeBlock
-import com.squareup.kotlinpoet.FunSpec
-import com.squareup.kotlinpoet.PropertySpec
 import com.squareup.kotlinpoet.TypeName
 import name.wildswift.android.kannotations.ViewProperty
 
@@ -63,13 +61,13 @@ fun ViewProperty.getListenerGroup() = when (this) {
 }
 
 // TODO make more pretty
-fun ViewProperty.buildListener(childName: String, body: String, bodyCodeProperty1: PropertySpec, bodyCodeProperty2: PropertySpec, bodyCodeProperty3: FunSpec?, bodyCodeProperty4: PropertySpec, codeBlockBuilder: CodeBlock.Builder) {
+fun ViewProperty.buildListener(childName: String, body: CodeBlock, codeBlockBuilder: CodeBlock.Builder) {
     when (this) {
         ViewProperty.text -> {
             codeBlockBuilder.add("""
-                |$childName.addTextChangedListener(object : %5T {
-                |    override fun afterTextChanged(text: %6T) {
-                |    $body
+                |$childName.addTextChangedListener(object : %2T {
+                |    override fun afterTextChanged(text: %3T) {
+                |    %1L
                 |    }
                 |
                 |    override fun beforeTextChanged(s: CharSequence, start: Int, count: Int, after: Int) {
@@ -81,32 +79,32 @@ fun ViewProperty.buildListener(childName: String, body: String, bodyCodeProperty
                 |    }
                 |})
                 |
-            """.trimMargin(), bodyCodeProperty1, bodyCodeProperty2, bodyCodeProperty3, bodyCodeProperty4, textWatcherClass, editableClass)
+            """.trimMargin(), body, textWatcherClass, editableClass)
         }
         ViewProperty.checked -> {
             codeBlockBuilder.add("""
                     |$childName.setOnCheckedChangeListener { _, isChecked ->
-                    |    $body
+                    |    %1L
                     |}
                     |
-                """.trimMargin(), bodyCodeProperty1, bodyCodeProperty2, bodyCodeProperty3, bodyCodeProperty4)
+                """.trimMargin(), body)
         }
         ViewProperty.timePickerHour, ViewProperty.timePickerMinute -> {
             codeBlockBuilder.add("""
                     |$childName.setOnTimeChangedListener { _, hour, minute ->
-                    |$body
+                    |%1L
                     |}
                     |
-                """.trimMargin(), bodyCodeProperty1, bodyCodeProperty2, bodyCodeProperty3, bodyCodeProperty4)
+                """.trimMargin(), body)
         }
         ViewProperty.radioSelect -> {
             codeBlockBuilder.add("""
                 |$childName.setOnCheckedChangeListener { _, checkedIdRaw ->
                 |     val checkedId = checkedIdRaw.takeIf { it != -1 }
-                |$body     
+                |%1L     
                 |}
                 | 
-            """.trimMargin(), bodyCodeProperty1, bodyCodeProperty2, bodyCodeProperty3, bodyCodeProperty4)
+            """.trimMargin(), body)
         }
         else -> {
 
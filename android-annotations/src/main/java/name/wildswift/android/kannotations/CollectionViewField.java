@@ -57,4 +57,10 @@ public @interface CollectionViewField {
     boolean activeChild() default false;
 
     ListEvent[] elementEvents() default {};
+
+    /**
+     * If positive, text of elements this number of positions before and after bound element is measured in background.
+     * Only for {@code byDelegate} elements, that have fields with {@code precomputeText}
+     */
+    int precomputeTextDistance() default 0;
 }
\ No newline at end of file
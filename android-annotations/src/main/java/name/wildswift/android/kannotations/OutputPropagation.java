@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kannotations;
+
+/**
+ * Defines when changes of active child are applied to state of view
+ */
+public enum OutputPropagation {
+    /**
+     * Every change is applied immediately
+     */
+    Immediate,
+    /**
+     * Change is applied when child is not changed during {@code propagationDelay}
+     */
+    Debounce,
+    /**
+     * Changes are applied not more often than once per {@code propagationDelay}. Last change is always applied
+     */
+    Throttle,
+    /**
+     * Changes are applied when child loses focus
+     */
+    FocusLost
+}
@@ -50,4 +50,41 @@ public @interface ViewField {
     String childName() default "";
 
     boolean activeChild() default false;
+
+    /**
+     * When changes of active child are applied to state. Child may be read at any time later, so fields with custom listener
+     * must have {@code childPropertyName}
+     */
+    OutputPropagation propagation() default OutputPropagation.Immediate;
+
+    /**
+     * Delay of {@link OutputPropagation#Debounce} and {@link OutputPropagation#Throttle} in milliseconds
+     */
+    int propagationDelay() default 300;
+
+    /**
+     * Only for {@link ViewProperty#text}. If set, only changed part of text of child is replaced, so selection is kept
+     * and text is not laid out again. Child must have editable text, otherwise whole text is set
+     */
+    boolean minimalTextEdit() default false;
+
+    /**
+     * Only for {@link ViewProperty#text} of public field. If set, generated view has {@code precomputeText} function, that measures
+     * text of model on background thread. Measured text is applied later without measuring on main thread.
+     * Requires {@code androidx.core}
+     */
+    boolean precomputeText() default false;
+
+    /**
+     * Only for {@link ViewProperty#imageResource} and {@link ViewProperty#backgroundResource}. If set, drawable is decoded on
+     * background thread and cached for all generated views. Load of previous resource is cancelled, when field is changed,
+     * and nothing is done, when resource is the same
+     */
+    boolean asyncDrawable() default false;
+
+    /**
+     * Name of {@link ViewProperty#visibility} field, that hides child of this field. While gate field is {@code View.GONE}, changes
+     * of this field are not applied to child. They are applied once with latest value, when gate field is changed
+     */
+    String gatedBy() default "";
 }
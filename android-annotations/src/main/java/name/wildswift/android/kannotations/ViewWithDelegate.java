@@ -37,4 +37,22 @@ public @interface ViewWithDelegate {
     boolean saveInstanceState() default true;
 
     boolean generateViewDataObject() default true;
+
+    /**
+     * If set, state of view is changed immediately, but child views are updated only once per frame with latest state
+     */
+    boolean coalesceFrameUpdates() default false;
+
+    /**
+     * If set, view keeps state in own mutable fields and creates state object only when it is needed.
+     * In this mode {@code validateStateForNewInput} and {@code onNewInternalState} of delegate are called only if delegate or its superclass
+     * overrides them. {@code internalState} of delegate is set after every update of children anyway
+     */
+    boolean mutableState() default false;
+
+    /**
+     * If set, generated view has {@code bindListeners(LifecycleOwner)} function. Listeners of bound view are notified only while owner is started,
+     * latest values changed before are delivered on start, and listeners are removed when owner is destroyed
+     */
+    boolean lifecycleAwareListeners() default false;
 }
@@ -52,6 +52,14 @@ public class ViewDelegate<V extends View, VM> {
         internalState = data;
     }
 
+    /**
+     * Called by generated view on every change of state. Bits of {@code changes} are {@code <FIELD>_CHANGED} constants of state class,
+     * typed access to them is provided by generated {@code Changes} class nested in state class
+     */
+    public void onNewInternalState(@NotNull VM oldData, @NotNull VM data, long changes) {
+        onNewInternalState(data);
+    }
+
     @Nullable
     public Bundle getState() {
         return null;
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kannotations.util
+
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+
+/**
+ * Executor of generated views for work, that must not be done on main thread (measuring of text, decoding of drawables).
+ * Threads are daemon and have low priority, so they don't compete with main thread
+ */
+object BackgroundExecutor : Executor {
+    private val executor = Executors.newFixedThreadPool((Runtime.getRuntime().availableProcessors() - 1).coerceIn(1, 4)) { runnable ->
+        Thread(runnable, "wsannotations-background").apply {
+            isDaemon = true
+            priority = Thread.MIN_PRIORITY
+        }
+    }
+
+    override fun execute(command: Runnable) = executor.execute(command)
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kannotations.util
+
+import android.content.res.Configuration
+import android.content.res.Resources
+import android.graphics.drawable.Drawable
+import android.os.Build
+import android.os.Handler
+import android.os.Looper
+import android.util.LruCache
+import android.view.View
+import android.widget.ImageView
+import java.util.*
+
+/**
+ * Max count of drawables, that are kept in cache shared by all generated views
+ */
+private const val DRAWABLE_CACHE_SIZE = 128
+
+private val drawableCache = LruCache<DrawableKey, Drawable.ConstantState>(DRAWABLE_CACHE_SIZE)
+private val mainHandler by lazy { Handler(Looper.getMainLooper()) }
+private val imageRequests = WeakHashMap<View, DrawableRequest>()
+private val backgroundRequests = WeakHashMap<View, DrawableRequest>()
+
+/**
+ * Drawable resources are usually qualified only by density, night mode and layout direction, so other configuration changes
+ * don't drop cached drawables
+ */
+private data class DrawableKey(val resId: Int, val densityDpi: Int, val nightMode: Int, val layoutDirection: Int)
+
+private class DrawableRequest(val resId: Int) {
+    @Volatile
+    var cancelled = false
+}
+
+/**
+ * Sets image resource of [view] decoded on [BackgroundExecutor]. Must be called on main thread
+ */
+fun loadImageResourceAsync(view: ImageView, resId: Int) = loadDrawableAsync(view, resId, imageRequests) { view.setImageDrawable(it) }
+
+/**
+ * Sets background resource of [view] decoded on [BackgroundExecutor]. Must be called on main thread
+ */
+fun loadBackgroundResourceAsync(view: View, resId: Int) = loadDrawableAsync(view, resId, backgroundRequests) { view.background = it }
+
+/**
+ * Nothing is done if [resId] is the same as last requested for view. Otherwise previous load of view is cancelled, so result
+ * of stale load is never set to recycled view. Current drawable is kept until new one is decoded, so view doesn't blink.
+ * Drawables are decoded without theme and cached by [DrawableKey], theme of view is applied to every copy
+ */
+private fun loadDrawableAsync(view: View, resId: Int, requests: WeakHashMap<View, DrawableRequest>, apply: (Drawable?) -> Unit) {
+    val previous = requests[view]
+    if (previous != null && previous.resId == resId) return
+    previous?.cancelled = true
+    val request = DrawableRequest(resId)
+    requests[view] = request
+    if (resId == 0) {
+        apply(null)
+        return
+    }
+    val resources = view.resources
+    val theme = view.context.theme
+    val configuration = resources.configuration
+    val key = DrawableKey(
+            resId,
+            resources.displayMetrics.densityDpi,
+            configuration.uiMode and Configuration.UI_MODE_NIGHT_MASK,
+            if (Build.VERSION.SDK_INT >= 17) configuration.layoutDirection else 0
+    )
+    val cached = drawableCache.get(key)
+    if (cached != null) {
+        apply(themedDrawable(cached.newDrawable(resources), theme))
+        return
+    }
+    BackgroundExecutor.execute {
+        if (request.cancelled) return@execute
+        val drawable = try {
+            decodeDrawable(resources, resId)
+        } catch (e: Resources.NotFoundException) {
+            // Error is thrown on main thread as by synchronous setter
+            mainHandler.post { if (!request.cancelled) apply(decodeDrawable(resources, resId)) }
+            return@execute
+        }
+        mainHandler.post {
+            val state = drawable.constantState
+            if (state != null) drawableCache.put(key, state)
+            if (!request.cancelled) apply(themedDrawable(state?.newDrawable(resources) ?: drawable, theme))
+        }
+    }
+}
+
+/**
+ * Cached constant state is shared, so drawable is mutated before theme is applied, as [Resources] does it
+ */
+private fun themedDrawable(drawable: Drawable, theme: Resources.Theme): Drawable {
+    if (Build.VERSION.SDK_INT < 21 || !drawable.canApplyTheme()) return drawable
+    return drawable.mutate().apply { applyTheme(theme) }
+}
+
+@Suppress("DEPRECATION")
+private fun decodeDrawable(resources: Resources, resId: Int): Drawable = resources.getDrawable(resId)
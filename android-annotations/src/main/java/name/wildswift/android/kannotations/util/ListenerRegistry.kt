@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kannotations.util
+
+/**
+ * Copy-on-write list of listeners of generated view. Array returned by [listeners] is never changed, so it is iterated
+ * without allocation, and listeners may be added or removed while it is dispatched
+ */
+class ListenerRegistry<L : Any> {
+    var listeners: Array<Any?> = EMPTY
+        private set
+
+    fun add(listener: L) {
+        val current = listeners
+        listeners = current.copyOf(current.size + 1).also { it[current.size] = listener }
+    }
+
+    fun remove(listener: L) {
+        val current = listeners
+        val index = current.indexOf(listener)
+        if (index < 0) return
+        listeners = if (current.size == 1) EMPTY else arrayOfNulls<Any>(current.size - 1).also {
+            System.arraycopy(current, 0, it, 0, index)
+            System.arraycopy(current, index + 1, it, index, current.size - index - 1)
+        }
+    }
+
+    companion object {
+        private val EMPTY = arrayOfNulls<Any>(0)
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package name.wildswift.android.kannotations.util
+
+import android.text.Spanned
+import android.text.TextUtils
+import android.widget.TextView
+
+/**
+ * Compares text of view with value of field without creating strings. If [value] is [Spanned], its spans must be
+ * set in [current] at the same positions
+ */
+fun isSameText(current: CharSequence?, value: CharSequence?): Boolean {
+    if (!TextUtils.equals(current, value)) return false
+    if (value !is Spanned) return true
+    val spans = value.getSpans(0, value.length, Any::class.java)
+    if (current !is Spanned) return spans.isEmpty()
+    return spans.all { current.getSpanStart(it) == value.getSpanStart(it) && current.getSpanEnd(it) == value.getSpanEnd(it) }
+}
+
+/**
+ * Replaces only part of text of [view], that differs from [value]. Selection and spans outside of replaced part are kept, and
+ * watchers get only changed range. If text of view is not editable, whole text is set
+ */
+fun applyTextEdit(view: TextView, value: CharSequence) {
+    val editable = view.editableText
+    if (editable == null) {
+        if (!isSameText(view.text, value)) view.text = value
+        return
+    }
+    val oldLength = editable.length
+    val newLength = value.length
+    val maxCommon = minOf(oldLength, newLength)
+    var prefix = 0
+    while (prefix < maxCommon && editable[prefix] == value[prefix]) prefix++
+    if (prefix == oldLength && prefix == newLength) return
+    var suffix = 0
+    while (suffix < maxCommon - prefix && editable[oldLength - suffix - 1] == value[newLength - suffix - 1]) suffix++
+    editable.replace(prefix, oldLength - suffix, value, prefix, newLength - suffix)
+}
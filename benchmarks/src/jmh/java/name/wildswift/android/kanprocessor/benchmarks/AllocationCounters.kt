@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wildswift.android.kanprocessor.benchmarks
+
+import org.openjdk.jmh.annotations.AuxCounters
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Reports bytes allocated by processing thread per single annotated class of corpus.
+ * Value is average over iteration, so it is comparable between corpus sizes
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+open class AllocationCounters {
+    @JvmField
+    var bytesPerElement = 0.0
+
+    private var totalBytes = 0L
+    private var totalElements = 0L
+
+    @Setup(Level.Iteration)
+    fun reset() {
+        bytesPerElement = 0.0
+        totalBytes = 0
+        totalElements = 0
+    }
+
+    fun record(allocatedBytes: Long, elements: Int) {
+        totalBytes += allocatedBytes
+        totalElements += elements
+        bytesPerElement = totalBytes.toDouble() / totalElements
+    }
+}
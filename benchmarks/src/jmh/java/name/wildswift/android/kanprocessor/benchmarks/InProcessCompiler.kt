@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wildswift.android.kanprocessor.benchmarks
+
+import java.io.File
+import java.lang.management.ManagementFactory
+import java.nio.file.Files
+import javax.annotation.processing.Processor
+import javax.tools.Diagnostic
+import javax.tools.DiagnosticCollector
+import javax.tools.JavaFileObject
+import javax.tools.ToolProvider
+
+/**
+ * Runs annotation processor over sources with javac from current JVM, same way as kapt runs it over stubs.
+ * Only annotation processing is done (`-proc:only`), generated Kotlin files are written to temporary directory
+ */
+class InProcessCompiler(private val outputRoot: File) {
+    private val compiler = ToolProvider.getSystemJavaCompiler()
+            ?: throw IllegalStateException("Benchmarks must be run on JDK, JavaCompiler is not available")
+
+    private val threadBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+
+    /**
+     * @return bytes allocated by current thread during processing
+     */
+    fun process(processor: Processor, sources: List<JavaFileObject>, options: Map<String, String> = mapOf()): Long {
+        val outputDir = Files.createTempDirectory(outputRoot.toPath(), "run").toFile()
+        val generatedDir = File(outputDir, "kotlin").apply { mkdirs() }
+        val classesDir = File(outputDir, "classes").apply { mkdirs() }
+
+        val diagnostics = DiagnosticCollector<JavaFileObject>()
+        val arguments = listOf(
+                "-proc:only",
+                "-nowarn",
+                "-classpath", System.getProperty("java.class.path"),
+                "-s", classesDir.absolutePath,
+                "-d", classesDir.absolutePath,
+                "-Akapt.kotlin.generated=${generatedDir.absolutePath}",
+                "-Aapplication.id=$APPLICATION_ID"
+        ) + options.map { (key, value) -> "-A$key=$value" }
+
+        val threadId = Thread.currentThread().id
+        val allocatedBefore = threadBean.getThreadAllocatedBytes(threadId)
+        val success = compiler.getTask(null, null, diagnostics, arguments, null, sources)
+                .apply { setProcessors(listOf(processor)) }
+                .call()
+        val allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore
+
+        val errors = diagnostics.diagnostics.filter { it.kind == Diagnostic.Kind.ERROR }
+        if (!success || errors.isNotEmpty()) {
+            throw IllegalStateException("Processing of synthetic corpus failed:\n" + errors.joinToString("\n") { it.getMessage(null) })
+        }
+        return allocated
+    }
+
+    /**
+     * Removes output of all previous runs
+     */
+    fun clean() {
+        outputRoot.listFiles()?.forEach { it.deleteRecursively() }
+    }
+
+    companion object {
+        const val APPLICATION_ID = "name.wildswift.bench"
+    }
+}
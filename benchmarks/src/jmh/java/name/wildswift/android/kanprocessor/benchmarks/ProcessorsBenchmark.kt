@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wildswift.android.kanprocessor.benchmarks
+
+import name.wildswift.android.kanprocessor.ActivityFieldsAnnotationProcessor
+import name.wildswift.android.kanprocessor.RandomFunctionsAnnotationProcessor
+import name.wildswift.android.kanprocessor.ViewWithDelegateAnnotationProcessor
+import org.openjdk.jmh.annotations.*
+import java.io.File
+import java.nio.file.Files
+import java.util.concurrent.TimeUnit
+import javax.tools.JavaFileObject
+
+/**
+ * Time of single processor run over synthetic corpus of [size] annotated classes.
+ * Every invocation uses new processor instance and new output directory, so all files are generated and written again
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+open class ProcessorsBenchmark {
+    @Param("10", "100", "1000")
+    @JvmField
+    var size = 0
+
+    private lateinit var outputRoot: File
+    private lateinit var compiler: InProcessCompiler
+    private lateinit var viewDelegates: List<JavaFileObject>
+    private lateinit var activities: List<JavaFileObject>
+    private lateinit var randomFunctions: List<JavaFileObject>
+
+    @Setup(Level.Trial)
+    fun setUp() {
+        outputRoot = Files.createTempDirectory("wsannotations-bench").toFile()
+        compiler = InProcessCompiler(outputRoot)
+        val corpus = SyntheticCorpus(delegates = size)
+        viewDelegates = corpus.viewDelegates()
+        activities = corpus.activities()
+        randomFunctions = corpus.randomFunctions()
+    }
+
+    @TearDown(Level.Iteration)
+    fun cleanOutput() {
+        compiler.clean()
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        outputRoot.deleteRecursively()
+    }
+
+    @Benchmark
+    fun viewWithDelegate(counters: AllocationCounters) {
+        counters.record(compiler.process(ViewWithDelegateAnnotationProcessor(), viewDelegates), size)
+    }
+
+    @Benchmark
+    fun activityFields(counters: AllocationCounters) {
+        counters.record(compiler.process(ActivityFieldsAnnotationProcessor(), activities), size)
+    }
+
+    @Benchmark
+    fun randomFunctions(counters: AllocationCounters) {
+        counters.record(compiler.process(RandomFunctionsAnnotationProcessor(), randomFunctions), size)
+    }
+}
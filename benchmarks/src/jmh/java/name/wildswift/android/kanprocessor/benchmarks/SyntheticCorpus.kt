@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2022 Wild Swift
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wildswift.android.kanprocessor.benchmarks
+
+import java.net.URI
+import javax.tools.JavaFileObject
+import javax.tools.SimpleJavaFileObject
+
+/**
+ * Generates Java sources of annotated classes for processors benchmarks.
+ *
+ * Delegates are grouped to `byDelegate` chains of [byDelegateChainLength]: every delegate, except first in chain,
+ * references previous one in basic field and in collection fields
+ */
+data class SyntheticCorpus(
+        val delegates: Int,
+        val fieldsPerDelegate: Int = 6,
+        val collectionFieldsPerDelegate: Int = 1,
+        val eventsPerDelegate: Int = 2,
+        val attributesPerDelegate: Int = 2,
+        val byDelegateChainLength: Int = 3
+) {
+    fun viewDelegates() = (0 until delegates).map { source(delegateName(it), viewDelegate(it)) }
+
+    /**
+     * Activities with [fieldsPerDelegate] extras each
+     */
+    fun activities() = (0 until delegates).map { source("Bench${it}Activity", activity(it)) }
+
+    /**
+     * Classes with random functions, every with dictionary of [fieldsPerDelegate] functions
+     */
+    fun randomFunctions() = (0 until delegates).map { source("Bench${it}Randomized", randomFunction(it)) }
+
+    private fun viewDelegate(index: Int): String {
+        val parent = if (index % byDelegateChainLength != 0) delegateName(index - 1) else null
+        val fields = (0 until fieldsPerDelegate).map { viewField(it) } +
+                listOfNotNull(parent?.let { "@ViewField(name = \"child\", childName = \"vtChild\", byDelegate = $it.class, activeChild = true)" })
+        val collections = (0 until collectionFieldsPerDelegate).map {
+            if (parent != null)
+                "@CollectionViewField(name = \"items$it\", childName = \"vtList$it\", byDelegate = $parent.class, elementEvents = @ListEvent(name = \"onItem${it}Click\", listener = ViewListener.onClick))"
+            else
+                "@CollectionViewField(name = \"items$it\", childName = \"vtList$it\", type = String.class, byProperty = ViewProperty.text, viewForElementClass = TextView.class)"
+        }
+        val events = (0 until eventsPerDelegate).map { "@ViewEvent(name = \"onField${it}Click\", childName = \"vtField$it\", listener = ViewListener.onClick)" }
+        val attributes = (0 until attributesPerDelegate).map { "@ViewAttribute(reference = \"benchAttr$it\", type = AttributeType.string)" }
+
+        return """
+            |package $PACKAGE;
+            |
+            |import android.view.View;
+            |import android.widget.FrameLayout;
+            |import android.widget.TextView;
+            |import name.wildswift.android.kannotations.*;
+            |import name.wildswift.android.kannotations.interfaces.ViewDelegate;
+            |
+            |@ViewWithDelegate(parent = FrameLayout.class)
+            |${container("Fields", fields)}
+            |${container("CollectionsFields", collections)}
+            |${container("Events", events)}
+            |${container("Attributes", attributes)}
+            |public class ${delegateName(index)} extends ViewDelegate {
+            |    public ${delegateName(index)}(View view) { super(view); }
+            |}
+            |""".trimMargin()
+    }
+
+    private fun viewField(index: Int) = when (index % FIELD_PATTERNS.size) {
+        0 -> "@ViewField(name = \"field$index\", childName = \"vtField$index\", byProperty = ViewProperty.text, rwType = ReadWriteMode.FullObservableField, activeChild = true)"
+        1 -> "@ViewField(name = \"field$index\", childName = \"vtField$index\", byProperty = ViewProperty.checked, rwType = ReadWriteMode.ObservableField, activeChild = true)"
+        else -> "@ViewField(name = \"field$index\", childName = \"vtField$index\", byProperty = ViewProperty.${FIELD_PATTERNS[index % FIELD_PATTERNS.size]})"
+    }
+
+    private fun activity(index: Int): String {
+        val fields = (0 until fieldsPerDelegate).map { "@ActivityField(name = \"extra$it\", type = ${EXTRA_TYPES[it % EXTRA_TYPES.size]}.class, nullable = ${it % 2 == 0})" }
+        return """
+            |package $PACKAGE;
+            |
+            |import android.app.Activity;
+            |import name.wildswift.android.kannotations.*;
+            |
+            |${container("ActivityFields", fields)}
+            |public class Bench${index}Activity extends Activity {
+            |}
+            |""".trimMargin()
+    }
+
+    private fun randomFunction(index: Int): String {
+        val dictionary = (0 until fieldsPerDelegate).joinToString { "\"$PACKAGE.Bench${index}Randomized.variant$it\"" }
+        return """
+            |package $PACKAGE;
+            |
+            |import name.wildswift.android.kannotations.*;
+            |
+            |@RandomFunction(parameters = @RandomFunctionParameter(name = "value", type = int.class), dictionary = {$dictionary}, count = 3)
+            |public class Bench${index}Randomized {
+            |}
+            |""".trimMargin()
+    }
+
+    private fun container(annotation: String, values: List<String>) =
+            if (values.isEmpty()) "" else values.joinToString(",\n|        ", "@$annotation({\n|        ", "\n|})")
+
+    private fun delegateName(index: Int) = "Bench${index}ViewDelegate"
+
+    private fun source(className: String, content: String): JavaFileObject =
+            object : SimpleJavaFileObject(URI.create("string:///${PACKAGE.replace('.', '/')}/$className.java"), JavaFileObject.Kind.SOURCE) {
+                override fun getCharContent(ignoreEncodingErrors: Boolean) = content
+            }
+
+    companion object {
+        const val PACKAGE = "name.wildswift.bench"
+
+        private val FIELD_PATTERNS = listOf("text", "checked", "visibility", "imageResource", "textColor", "alpha")
+        private val EXTRA_TYPES = listOf("String", "Long", "Integer", "Boolean")
+    }
+}